@@ -0,0 +1,53 @@
+package org.java.lab6again.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Syntetyczne obrazy testowe o zadanej liczbie megapikseli (proporcje 4:3)
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    static int width(int megapixels) {
+        return (int) Math.round(Math.sqrt(megapixels * 1_000_000 * 4.0 / 3.0));
+    }
+
+    static int height(int megapixels) {
+        return (int) Math.round(megapixels * 1_000_000.0 / width(megapixels));
+    }
+
+    static long pixels(int megapixels) {
+        return (long) width(megapixels) * height(megapixels);
+    }
+
+    static int type(String name) {
+        return switch (name.toUpperCase(Locale.ROOT)) {
+            case "INT_RGB" -> BufferedImage.TYPE_INT_RGB;
+            case "INT_ARGB" -> BufferedImage.TYPE_INT_ARGB;
+            case "3BYTE_BGR" -> BufferedImage.TYPE_3BYTE_BGR;
+            default -> throw new IllegalArgumentException("Nieznany typ obrazu: " + name);
+        };
+    }
+
+    // Gradient z szumem - żeby progowanie i konturowanie nie trafiały w jedną gałąź
+    static BufferedImage create(int megapixels, String type) {
+        int width = width(megapixels);
+        int height = height(megapixels);
+        int[] row = new int[width];
+        SplittableRandom random = new SplittableRandom(42);
+        BufferedImage image = new BufferedImage(width, height, type(type));
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(64);
+                int r = (x * 191 / width + noise) & 0xff;
+                int g = (y * 191 / height + noise) & 0xff;
+                int b = ((x + y) * 127 / (width + height) + noise) & 0xff;
+                row[x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,57 @@
+package org.java.lab6again.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+
+// Uruchamia benchmarki z profilerem GC i wypisuje czasy w przeliczeniu na piksel.
+// Przyjmuje standardowe opcje JMH, np. "FilterBenchmark.edges -p megapixels=1,12 -p threads=1,8"
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        System.out.println();
+        System.out.printf("%-32s %-32s %12s %10s %14s %14s%n",
+                "Benchmark", "Parametry", "ns/op", "ns/piksel", "alokacja B/op", "alokacja MB/s");
+        for (RunResult run : results) {
+            String megapixels = param(run, "megapixels");
+            long pixels = BenchmarkImages.pixels(Integer.parseInt(megapixels));
+            double nsPerOp = run.getPrimaryResult().getScore();
+            String name = run.getParams().getBenchmark();
+            System.out.printf("%-32s %-32s %12.0f %10.3f %14.0f %14.1f%n",
+                    name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1),
+                    megapixels + "MP/" + param(run, "threads") + "w/" + param(run, "imageType"),
+                    nsPerOp,
+                    nsPerOp / pixels,
+                    secondary(run, "gc.alloc.rate.norm"),
+                    secondary(run, "gc.alloc.rate"));
+        }
+    }
+
+    private static String param(RunResult run, String name) {
+        String value = run.getParams().getParam(name);
+        return value == null ? "-" : value;
+    }
+
+    private static double secondary(RunResult run, String suffix) {
+        for (Map.Entry<String, Result> entry : run.getSecondaryResults().entrySet()) {
+            if (entry.getKey().endsWith(suffix)) {
+                return entry.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+}
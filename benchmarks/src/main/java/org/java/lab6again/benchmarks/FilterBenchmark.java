@@ -0,0 +1,76 @@
+package org.java.lab6again.benchmarks;
+
+import org.java.lab6again.Convolution;
+import org.java.lab6again.IntImages;
+import org.java.lab6again.PixelKernels;
+import org.java.lab6again.TileScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Filtry punktowe, konturowanie i rozmycie: rozmiar obrazu x liczba wątków x typ obrazu.
+// Dla typów innych niż INT_* mierzona jest też jednorazowa konwersja do int[].
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class FilterBenchmark {
+
+    @Param({"1", "4", "12", "24", "50"})
+    public int megapixels;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    @Param({"INT_RGB", "INT_ARGB", "3BYTE_BGR"})
+    public String imageType;
+
+    private BufferedImage source;
+    private int[] target;
+    private TileScheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = BenchmarkImages.create(megapixels, imageType);
+        target = new int[source.getWidth() * source.getHeight()];
+        scheduler = new TileScheduler(threads);
+    }
+
+    @Benchmark
+    public int[] negative() {
+        int[] src = IntImages.pixels(IntImages.toIntImage(source));
+        scheduler.forEachSpan(src.length, (from, to) -> PixelKernels.negative(src, target, from, to));
+        return target;
+    }
+
+    @Benchmark
+    public int[] threshold() {
+        int[] src = IntImages.pixels(IntImages.toIntImage(source));
+        scheduler.forEachSpan(src.length, (from, to) -> PixelKernels.threshold(src, target, from, to, 128));
+        return target;
+    }
+
+    @Benchmark
+    public int[] edges() {
+        int[] src = IntImages.pixels(IntImages.toIntImage(source));
+        int width = source.getWidth();
+        int height = source.getHeight();
+        scheduler.forEachTile(width, height, 1, tile -> Convolution.gradientTile(src, target, width, height,
+                Convolution.Gradient.SOBEL, Convolution.Border.CLAMP, tile.x0(), tile.y0(), tile.x1(), tile.y1()));
+        return target;
+    }
+
+    @Benchmark
+    public int[] gaussianBlur() {
+        int[] src = IntImages.pixels(IntImages.toIntImage(source));
+        int width = source.getWidth();
+        int height = source.getHeight();
+        Convolution.Kernel kernel = Convolution.gaussian(2);
+        scheduler.forEachTile(width, height, kernel.radiusY(), tile -> Convolution.filterTile(src, target, width, height,
+                kernel, Convolution.Border.CLAMP, tile.x0(), tile.y0(), tile.x1(), tile.y1()));
+        return target;
+    }
+}
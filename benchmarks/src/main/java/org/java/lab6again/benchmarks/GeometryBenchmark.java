@@ -0,0 +1,57 @@
+package org.java.lab6again.benchmarks;
+
+import org.java.lab6again.ImageFilters;
+import org.java.lab6again.Resampler;
+import org.java.lab6again.TileScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Obrót, odbicie i skalowanie (do połowy wymiarów) całego obrazu: rozmiar obrazu x liczba wątków x typ obrazu
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class GeometryBenchmark {
+
+    @Param({"1", "4", "12", "24", "50"})
+    public int megapixels;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    @Param({"INT_RGB", "INT_ARGB", "3BYTE_BGR"})
+    public String imageType;
+
+    private BufferedImage source;
+    private TileScheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = BenchmarkImages.create(megapixels, imageType);
+        scheduler = new TileScheduler(threads);
+    }
+
+    @Benchmark
+    public BufferedImage rotate90() {
+        return ImageFilters.rotate(source, 90, scheduler);
+    }
+
+    @Benchmark
+    public BufferedImage rotate180() {
+        return ImageFilters.rotate(source, 180, scheduler);
+    }
+
+    @Benchmark
+    public BufferedImage flipVertical() {
+        return ImageFilters.flip(source, false, scheduler);
+    }
+
+    @Benchmark
+    public BufferedImage scaleHalf() {
+        return ImageFilters.scale(source, source.getWidth() / 2, source.getHeight() / 2, Resampler.DEFAULT_FILTER, scheduler);
+    }
+}
@@ -0,0 +1,62 @@
+package org.java.lab6again.benchmarks;
+
+import org.java.lab6again.Resampler;
+import org.java.lab6again.TileScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Skalowanie: pomniejszenie o połowę i miniatura 256 px dla każdej metody, dla porównania getScaledInstance
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class ResampleBenchmark {
+
+    private static final int THUMBNAIL_WIDTH = 256;
+
+    @Param({"1", "12", "50"})
+    public int megapixels;
+
+    @Param({"nearest", "bilinear", "bicubic", "lanczos"})
+    public String filter;
+
+    private BufferedImage source;
+    private Resampler.Filter resamplerFilter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = BenchmarkImages.create(megapixels, "INT_RGB");
+        resamplerFilter = Resampler.Filter.parse(filter);
+    }
+
+    @Benchmark
+    public BufferedImage half() {
+        return Resampler.resize(source, source.getWidth() / 2, source.getHeight() / 2, resamplerFilter, TileScheduler.shared());
+    }
+
+    @Benchmark
+    public BufferedImage thumbnail() {
+        return Resampler.resize(source, THUMBNAIL_WIDTH, thumbnailHeight(), resamplerFilter, TileScheduler.shared());
+    }
+
+    // dotychczasowa ścieżka: getScaledInstance(SCALE_SMOOTH) + drawImage (parametr filter nie ma tu znaczenia)
+    @Benchmark
+    public BufferedImage thumbnailScaledInstance() {
+        Image tmp = source.getScaledInstance(THUMBNAIL_WIDTH, thumbnailHeight(), Image.SCALE_SMOOTH);
+        BufferedImage scaled = new BufferedImage(THUMBNAIL_WIDTH, thumbnailHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.drawImage(tmp, 0, 0, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private int thumbnailHeight() {
+        return Math.max(1, source.getHeight() * THUMBNAIL_WIDTH / source.getWidth());
+    }
+}
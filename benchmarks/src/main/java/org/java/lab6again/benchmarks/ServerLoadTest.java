@@ -0,0 +1,81 @@
+package org.java.lab6again.benchmarks;
+
+import org.java.lab6again.LatencyHistogram;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+// Obciążenie serwera zadań (ServerApplication) z tej samej maszyny: clients klientów w wątkach wirtualnych
+// wysyła ten sam obraz jeden po drugim przez zadany czas. Wypisuje przepustowość, liczbę odpowiedzi według
+// kodu (503 - odrzucone przez pełną kolejkę) i percentyle czasu odpowiedzi dla zakończonych zadań.
+// ServerLoadTest <adres> <obraz> <operacje> [klienci=16] [sekundy=30]
+// java -cp target/benchmarks.jar org.java.lab6again.benchmarks.ServerLoadTest http://127.0.0.1:8080 zdjecie.jpg edges 32 60
+public class ServerLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Użycie: ServerLoadTest <adres> <obraz> <operacje> [klienci=16] [sekundy=30]");
+            System.exit(2);
+        }
+        URI uri = URI.create(args[0] + "/process?ops=" + URLEncoder.encode(args[2], StandardCharsets.UTF_8));
+        byte[] image = Files.readAllBytes(Path.of(args[1]));
+        int clients = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        long seconds = args.length > 4 ? Long.parseLong(args[4]) : 30;
+
+        HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofByteArray(image)).build();
+        LatencyHistogram completed = new LatencyHistogram();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder failures = new LongAdder();
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                pool.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            statuses.computeIfAbsent(response.statusCode(), code -> new LongAdder()).increment();
+                            if (response.statusCode() == 200) {
+                                completed.record(System.nanoTime() - sent);
+                            } else if (response.statusCode() == 503) {
+                                // tak jak zachęca nagłówek Retry-After, tylko krócej - żeby kolejka nie pustoszała
+                                Thread.sleep(50);
+                            }
+                        } catch (Exception e) {
+                            failures.increment();
+                            Thread.sleep(100);
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        LatencyHistogram.Snapshot latency = completed.snapshot();
+        System.out.printf("Klienci: %d, czas: %.1f s, operacje: %s%n", clients, elapsed, args[2]);
+        System.out.printf("Zakończone zadania: %d (%.2f/s)%n", latency.count(), latency.count() / elapsed);
+        new TreeMap<>(statuses).forEach((code, count) -> System.out.printf("  HTTP %d: %d%n", code, count.sum()));
+        if (failures.sum() > 0) {
+            System.out.printf("  błędy połączenia: %d%n", failures.sum());
+        }
+        System.out.printf("Czas odpowiedzi [ms]: średnio %.1f, p50 %.1f, p90 %.1f, p99 %.1f, maks. %.1f%n",
+                latency.meanNanos() / 1e6, latency.percentileNanos(0.5) / 1e6, latency.percentileNanos(0.9) / 1e6,
+                latency.percentileNanos(0.99) / 1e6, latency.maxNanos() / 1e6);
+    }
+}
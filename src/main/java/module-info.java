@@ -12,6 +12,9 @@ module org.java.lab6again {
     requires com.almasb.fxgl.all;
     requires javafx.swing;
     requires java.logging;
+    requires jdk.jfr;
+    requires jdk.httpserver;
+    requires static jdk.incubator.vector;
 
     opens org.java.lab6again to javafx.fxml;
     exports org.java.lab6again;
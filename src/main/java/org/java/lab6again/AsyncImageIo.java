@@ -0,0 +1,153 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Wczytywanie i zapis plików na osobnej puli wątków wejścia-wyjścia, żeby ani wątek JavaFX, ani wątki filtrów
+// nie czekały na dysk. Kolejne pliki z folderu mogą być dekodowane z wyprzedzeniem - przejście do następnego
+// obrazu bierze wtedy gotowy wynik.
+public final class AsyncImageIo implements AutoCloseable {
+
+    private final ExecutorService pool;
+    // osobny wątek dla dekodowania z wyprzedzeniem - wczytanie wybranego pliku nie czeka w kolejce za nim
+    private final ExecutorService prefetchPool;
+    // dekodowane z wyprzedzeniem pliki
+    private final Map<Path, CompletableFuture<Decoded>> prefetched = new HashMap<>();
+
+    // modified - data modyfikacji pliku sprzed dekodowania
+    private record Decoded(long modified, BufferedImage image) {
+    }
+
+    public AsyncImageIo(int threads) {
+        this.pool = Executors.newFixedThreadPool(threads, daemonThreads("we-wy-", Thread.NORM_PRIORITY));
+        this.prefetchPool = Executors.newFixedThreadPool(1, daemonThreads("we-wy-zapas-", Thread.NORM_PRIORITY - 1));
+        Metrics.global().registerPool("we-wy", pool);
+        Metrics.global().registerPool("we-wy-zapas", prefetchPool);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix, int priority) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+
+    // Obraz typu INT (gotowy dla filtrów); wynik dekodowany z wyprzedzeniem, jeśli plik się od tego czasu nie zmienił
+    public CompletableFuture<BufferedImage> load(Path file) {
+        CompletableFuture<Decoded> hit;
+        synchronized (prefetched) {
+            hit = prefetched.remove(file);
+        }
+        if (hit == null) {
+            return CompletableFuture.supplyAsync(() -> decode(file).image(), pool);
+        }
+        // plik zmieniony po dekodowaniu z wyprzedzeniem (albo błąd dekodowania) - wczytujemy od nowa
+        return hit.exceptionally(ex -> null).thenComposeAsync(decoded ->
+                decoded != null && decoded.modified() == modified(file)
+                        ? CompletableFuture.completedFuture(decoded.image())
+                        : CompletableFuture.supplyAsync(() -> decode(file).image(), pool), pool);
+    }
+
+    // Obraz pomniejszony już przy dekodowaniu, co najmniej minWidth x minHeight (podgląd, miniatura)
+    public CompletableFuture<BufferedImage> loadReduced(Path file, int minWidth, int minHeight) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return IntImages.toIntImage(ImageCodecs.read(file, null, minWidth, minHeight));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    // Dekoduje z wyprzedzeniem podane pliki; wcześniej przygotowane, a nie podane teraz, są zwalniane
+    public void prefetch(List<Path> files) {
+        synchronized (prefetched) {
+            prefetched.keySet().retainAll(files);
+            for (Path file : files) {
+                prefetched.computeIfAbsent(file, f -> CompletableFuture.supplyAsync(() -> decode(f), prefetchPool));
+            }
+        }
+    }
+
+    // Skrót zawartości pliku dla ResultCache
+    public CompletableFuture<String> hash(Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ResultCache.hash(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    // Pliki JPG z folderu, w którym jest file, posortowane według nazwy
+    public CompletableFuture<List<Path>> listFolder(Path file) {
+        return listDirectory(file.toAbsolutePath().getParent());
+    }
+
+    // Pliki JPG z podanego folderu, posortowane według nazwy
+    public CompletableFuture<List<Path>> listDirectory(Path folder) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Stream<Path> entries = Files.list(folder)) {
+                return entries
+                        .filter(path -> path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".jpg"))
+                        .filter(Files::isRegularFile)
+                        .sorted()
+                        .toList();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    public CompletableFuture<Void> save(BufferedImage image, Path target, String format, float quality) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                ImageCodecs.write(image, target, format, quality);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    private static Decoded decode(Path file) {
+        long modified = modified(file);
+        try {
+            return new Decoded(modified, IntImages.toIntImage(ImageCodecs.read(file)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long modified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        Metrics.global().unregisterPool("we-wy", pool);
+        Metrics.global().unregisterPool("we-wy-zapas", prefetchPool);
+        pool.shutdownNow();
+        prefetchPool.shutdownNow();
+    }
+}
@@ -0,0 +1,187 @@
+package org.java.lab6again;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+// Tryb wsadowy bez interfejsu graficznego:
+// BatchApplication [opcje] <katalog|wzorzec> <operacje> [katalog_wyjściowy]
+//   --format=<jpg|png|tif|bmp>  format plików wynikowych (domyślnie jpg)
+//   --tiled                      przetwarzanie pasami - dla obrazów większych niż sterta
+//   --memory-mb=<n>              budżet pamięci na jeden obraz w trybie --tiled (domyślnie 64)
+//   --offheap                    kopie robocze filtrów w pamięci natywnej zamiast na stercie
+//   --scratch-dir=<katalog>      kopie robocze w plikach zmapowanych do pamięci w podanym katalogu
+//   --exif-orientation           obroty i odbicia JPEG bez ponownego kodowania - zmiana znacznika EXIF Orientation
+//   --quality=<1-100>            jakość plików JPEG (domyślnie 75)
+//   --metrics=<plik>             pomiary operacji zapisywane do pliku (*.json jako JSON, inne w formacie Prometheusa)
+public class BatchApplication {
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        String format = "jpg";
+        boolean tiled = false;
+        long memoryMb = 64;
+        boolean offHeap = false;
+        boolean exifOrientation = false;
+        float quality = ImageCodecs.DEFAULT_JPEG_QUALITY;
+        Path scratchDir = null;
+        Path metricsFile = null;
+        for (String arg : args) {
+            if (arg.startsWith("--format=")) {
+                format = arg.substring("--format=".length()).toLowerCase(Locale.ROOT);
+            } else if (arg.equals("--tiled")) {
+                tiled = true;
+            } else if (arg.equals("--exif-orientation")) {
+                exifOrientation = true;
+            } else if (arg.equals("--offheap")) {
+                offHeap = true;
+            } else if (arg.startsWith("--scratch-dir=")) {
+                offHeap = true;
+                scratchDir = Paths.get(arg.substring("--scratch-dir=".length()));
+            } else if (arg.startsWith("--quality=")) {
+                int percent = parseNumber(arg, "--quality=");
+                if (percent < 1 || percent > 100) {
+                    System.err.println("Jakość JPEG musi być z zakresu 1-100");
+                    System.exit(2);
+                }
+                quality = percent / 100f;
+            } else if (arg.startsWith("--metrics=")) {
+                metricsFile = Paths.get(arg.substring("--metrics=".length()));
+            } else if (arg.startsWith("--memory-mb=")) {
+                memoryMb = parseNumber(arg, "--memory-mb=");
+            } else {
+                positional.add(arg);
+            }
+        }
+
+        if (positional.size() < 2) {
+            usage();
+        }
+        if (!ImageCodecs.canWrite(format)) {
+            System.err.println("Nieobsługiwany format wyniku: " + format);
+            usage();
+        }
+
+        OperationChain chain = OperationChain.parse(positional.get(1));
+        Path outputDir = Paths.get(positional.size() > 2 ? positional.get(2) : "wynik");
+        List<Path> files = resolveInputs(positional.get(0));
+        if (files.isEmpty()) {
+            System.err.println("Nie znaleziono plików JPG: " + positional.get(0));
+            System.exit(1);
+        }
+
+        if (metricsFile != null) {
+            // zapis co 10 s i na końcu (także po System.exit)
+            Metrics.global().exportPeriodically(metricsFile, Duration.ofSeconds(10));
+        } else {
+            Metrics.exportFromSystemProperties();
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        TiledImageProcessor tiledProcessor = null;
+        if (tiled) {
+            if (!TiledImageProcessor.STREAMING_FORMATS.contains(format)) {
+                System.err.println("W trybie --tiled wynik musi być w formacie png, tif lub bmp");
+                System.exit(2);
+            }
+            tiledProcessor = new TiledImageProcessor(chain, memoryMb * 1024 * 1024, TileScheduler.shared());
+            // duże obrazy przetwarzamy po kolei - każdy i tak zajmuje wszystkie rdzenie
+            threads = 1;
+        }
+        PixelBufferPool bufferPool = null;
+        if (offHeap && tiledProcessor == null) {
+            if (!PixelBufferFilters.supports(chain)) {
+                System.err.println("Obrót i skalowanie wykonywane są na stercie - opcja --offheap zostanie pominięta");
+            }
+            if (scratchDir != null) {
+                Files.createDirectories(scratchDir);
+            }
+            // dwa bufory na każdy obraz w filtrach
+            bufferPool = new PixelBufferPool(scratchDir, threads * 2);
+        }
+
+        long start = System.nanoTime();
+        BatchProcessor.Result result;
+        BatchProcessor.Options options = BatchProcessor.Options.defaults()
+                .withFormat(format)
+                .withTiledProcessor(tiledProcessor)
+                .withBufferPool(bufferPool)
+                .withExifOrientation(exifOrientation)
+                .withQuality(quality);
+        if (exifOrientation && (!format.equals("jpg") || ExifOrientation.of(chain) == null)) {
+            System.err.println("Opcja --exif-orientation działa tylko dla wyniku JPEG i łańcucha z samych obrotów i odbić - zostanie pominięta");
+        }
+        try (BatchProcessor processor = new BatchProcessor(chain, outputDir, threads, options)) {
+            result = processor.process(files);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("Przetworzono %d plików (błędy: %d) w %d ms%n", result.processed(), result.failed(), millis);
+        if (result.failed() > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Użycie: BatchApplication [--format=jpg|png|tif|bmp] [--tiled] [--memory-mb=64] [--offheap] [--scratch-dir=<katalog>] [--exif-orientation] [--quality=75] [--metrics=<plik>] <katalog|wzorzec> <operacje> [katalog_wyjściowy]");
+        System.err.println("Przykład: BatchApplication \"zdjecia/*.jpg\" threshold:128,edges,rotate:90,scale:1024x768 wynik");
+        System.exit(2);
+    }
+
+    // Liczbowa wartość opcji; niepoprawna kończy program z opisem użycia, tak jak nieznane argumenty
+    private static int parseNumber(String arg, String option) {
+        try {
+            return Integer.parseInt(arg.substring(option.length()));
+        } catch (NumberFormatException e) {
+            System.err.println("Niepoprawna wartość opcji " + option.substring(0, option.length() - 1) + ": " + arg.substring(option.length()));
+            usage();
+            return 0;
+        }
+    }
+
+    static List<Path> resolveInputs(String input) throws IOException {
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> stream = Files.list(path)) {
+                return stream.filter(BatchApplication::isJpg).sorted().toList();
+            }
+        }
+
+        // wzorzec glob - katalog bazowy to część ścieżki przed pierwszym znakiem specjalnym
+        int wildcard = indexOfWildcard(input);
+        if (wildcard < 0) {
+            return Files.isRegularFile(path) ? List.of(path) : List.of();
+        }
+        int separator = Math.max(input.lastIndexOf('/', wildcard), input.lastIndexOf('\\', wildcard));
+        Path base = separator < 0 ? Paths.get(".") : Paths.get(input.substring(0, separator + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input.substring(separator + 1));
+        try (Stream<Path> stream = Files.walk(base)) {
+            return stream.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(base.relativize(p)))
+                    .filter(BatchApplication::isJpg)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int indexOfWildcard(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isJpg(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+}
@@ -0,0 +1,232 @@
+package org.java.lab6again;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Przetwarzanie wsadowe: dekodowanie -> filtry -> kodowanie, z ograniczoną liczbą obrazów w pamięci
+public class BatchProcessor implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(BatchProcessor.class.getName());
+
+    private final OperationChain chain;
+    private final Path outputDir;
+    private final ExecutorService ioPool;
+    private final ExecutorService cpuPool;
+    private final int maxInFlight;
+    private final String format;
+    private final float quality;
+    private final TiledImageProcessor tiledProcessor;
+    private final PixelBufferPool bufferPool;
+    // ułożenie do zapisania w EXIF zamiast obracania pikseli; null - zwykłe przetwarzanie
+    private final Orientation exifOrientation;
+
+    public record Result(int processed, int failed) {
+    }
+
+    // format - format plików wynikowych;
+    // tiledProcessor != null - każdy plik przetwarzany pasami, bez wczytywania całego obrazu do pamięci;
+    // bufferPool != null - kopie robocze filtrów poza stertą, w buforach z puli;
+    // exifOrientation - JPEG obracany tylko przez zmianę znacznika EXIF, jeśli łańcuch to same obroty i odbicia;
+    // quality - jakość JPEG (0-1)
+    public record Options(String format, TiledImageProcessor tiledProcessor, PixelBufferPool bufferPool,
+                          boolean exifOrientation, float quality) {
+
+        public static Options defaults() {
+            return new Options("jpg", null, null, false, ImageCodecs.DEFAULT_JPEG_QUALITY);
+        }
+
+        public Options withFormat(String format) {
+            return new Options(format, tiledProcessor, bufferPool, exifOrientation, quality);
+        }
+
+        public Options withTiledProcessor(TiledImageProcessor tiledProcessor) {
+            return new Options(format, tiledProcessor, bufferPool, exifOrientation, quality);
+        }
+
+        public Options withBufferPool(PixelBufferPool bufferPool) {
+            return new Options(format, tiledProcessor, bufferPool, exifOrientation, quality);
+        }
+
+        public Options withExifOrientation(boolean exifOrientation) {
+            return new Options(format, tiledProcessor, bufferPool, exifOrientation, quality);
+        }
+
+        public Options withQuality(float quality) {
+            return new Options(format, tiledProcessor, bufferPool, exifOrientation, quality);
+        }
+    }
+
+    public BatchProcessor(OperationChain chain, Path outputDir, int threads) {
+        this(chain, outputDir, threads, Options.defaults());
+    }
+
+    public BatchProcessor(OperationChain chain, Path outputDir, int threads, Options options) {
+        this.chain = chain;
+        this.outputDir = outputDir;
+        this.format = options.format();
+        this.quality = options.quality();
+        this.tiledProcessor = options.tiledProcessor();
+        this.bufferPool = options.bufferPool();
+        this.exifOrientation = options.exifOrientation() && format.equals("jpg") ? ExifOrientation.of(chain) : null;
+        this.ioPool = Executors.newFixedThreadPool(threads);
+        this.cpuPool = Executors.newFixedThreadPool(threads);
+        // po dwa obrazy na wątek - jeden w filtrach, drugi w dekodowaniu lub zapisie
+        this.maxInFlight = threads * 2;
+        Metrics.global().registerPool("wsad-we-wy", ioPool);
+        Metrics.global().registerPool("wsad-filtry", cpuPool);
+        ImageIO.setUseCache(false);
+    }
+
+    public Result process(List<Path> files) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Path base = commonParent(files);
+        Set<Path> targets = new HashSet<>();
+
+        for (Path file : files) {
+            Path target = outputDir.resolve(targetName(base, file));
+            if (!targets.add(target)) {
+                // np. zdjecie.jpg i zdjecie.jpeg w jednym katalogu
+                failed.incrementAndGet();
+                logger.severe("Pominięto plik " + file + " - wynik " + target + " ma już inny plik wejściowy");
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            inFlight.acquire();
+            submit(file, target).whenComplete((v, ex) -> {
+                if (ex == null) {
+                    processed.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    logger.log(Level.SEVERE, "Nie udało się przetworzyć pliku " + file, ex);
+                }
+                inFlight.release();
+            });
+        }
+        // czekamy aż wszystkie zadania oddadzą swoje pozwolenia
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        return new Result(processed.get(), failed.get());
+    }
+
+    private CompletableFuture<Void> submit(Path file, Path target) {
+        if (exifOrientation != null) {
+            return CompletableFuture.supplyAsync(() -> rewriteExif(file, target), ioPool)
+                    .thenCompose(done -> done ? CompletableFuture.completedFuture(null) : decodeAndProcess(file, target));
+        }
+        return decodeAndProcess(file, target);
+    }
+
+    private CompletableFuture<Void> decodeAndProcess(Path file, Path target) {
+        if (tiledProcessor != null) {
+            // w trybie kafelkowym dekodowanie, filtry i zapis przeplatają się pas po pasie
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    tiledProcessor.process(file, target, format);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, cpuPool);
+        }
+        if (bufferPool != null && PixelBufferFilters.supports(chain)) {
+            return CompletableFuture.supplyAsync(() -> read(file), ioPool)
+                    .thenApplyAsync(this::applyOffHeap, cpuPool)
+                    .thenAcceptAsync(image -> write(image, target), ioPool);
+        }
+        return CompletableFuture.supplyAsync(() -> read(file), ioPool)
+                .thenApplyAsync(image -> chain.apply(image, TileScheduler.shared(), true), cpuPool)
+                .thenAcceptAsync(image -> write(image, target), ioPool);
+    }
+
+    private boolean rewriteExif(Path file, Path target) {
+        try {
+            if (ExifOrientation.rewrite(file, target, exifOrientation)) {
+                return true;
+            }
+            logger.info("Brak miejsca na znacznik EXIF Orientation, obraz zostanie obrócony: " + file);
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Na stercie zostaje tylko zdekodowany obraz - wynik wraca do niego, bez pośrednich kopii
+    private BufferedImage applyOffHeap(BufferedImage image) {
+        PixelBuffer buffer = bufferPool.acquire(image.getWidth(), image.getHeight());
+        PixelBuffer scratch = bufferPool.acquire(image.getWidth(), image.getHeight());
+        try {
+            buffer.copyFrom(image);
+            PixelBufferFilters.apply(chain, buffer, scratch, TileScheduler.shared()).copyTo(image);
+            return image;
+        } finally {
+            bufferPool.release(buffer);
+            bufferPool.release(scratch);
+        }
+    }
+
+    // Ścieżka względem wspólnego katalogu plików wejściowych - pliki o tej samej nazwie z różnych podkatalogów
+    // (wzorzec z **) trafiają do odpowiednich podkatalogów wyniku, zamiast nadpisywać się nawzajem
+    private Path targetName(Path base, Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        Path directory = base.relativize(file.toAbsolutePath().normalize().getParent());
+        return directory.resolve((dot < 0 ? name : name.substring(0, dot)) + "." + format);
+    }
+
+    private static Path commonParent(List<Path> files) {
+        Path common = null;
+        for (Path file : files) {
+            Path parent = file.toAbsolutePath().normalize().getParent();
+            if (common == null) {
+                common = parent;
+            }
+            while (!parent.startsWith(common)) {
+                common = common.getParent();
+            }
+        }
+        return common;
+    }
+
+    private static BufferedImage read(Path file) {
+        try {
+            return ImageCodecs.read(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(BufferedImage image, Path target) {
+        try {
+            ImageCodecs.write(image, target, format, quality);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        Metrics.global().unregisterPool("wsad-we-wy", ioPool);
+        Metrics.global().unregisterPool("wsad-filtry", cpuPool);
+        ioPool.shutdown();
+        cpuPool.shutdown();
+        if (bufferPool != null) {
+            bufferPool.close();
+        }
+    }
+}
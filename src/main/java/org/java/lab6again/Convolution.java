@@ -0,0 +1,472 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Splot obrazu z dowolnym jądrem (pełnym albo rozdzielnym) i gradient jasności (Sobel, Scharr).
+// Obraz liczony jest kafelkami; w kafelku wiersze źródła z marginesem są rozkładane na płaszczyzny kanałów
+// i trafiają do bufora cyklicznego kh wierszy, więc każdy wiersz źródła jest czytany i rozpakowywany raz,
+// a pętle po wierszu to same dodawania i mnożenia na int[] (JIT zamienia je na instrukcje wektorowe).
+// Jądra rozdzielne: w buforze są wyniki przebiegu poziomego, przebieg pionowy sumuje kh wierszy bufora.
+// Kanał alfa nie jest rozmywany - wynik ma alfę piksela źródłowego.
+public final class Convolution {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private Convolution() {
+    }
+
+    // Wartości spoza obrazu
+    public enum Border {
+        // powielenie skrajnego piksela
+        CLAMP,
+        // odbicie bez powtarzania skrajnego piksela (... 2 1 | 0 1 2 ...)
+        REFLECT,
+        // obraz powtarzany okresowo - wymaga całego obrazu, nie działa w trybie kafelkowym
+        WRAP,
+        // przezroczysta czerń
+        ZERO;
+
+        // Indeks w [0, n) dla pozycji i albo -1 dla ZERO
+        int index(int i, int n) {
+            if (i >= 0 && i < n) {
+                return i;
+            }
+            return switch (this) {
+                case CLAMP -> i < 0 ? 0 : n - 1;
+                case REFLECT -> {
+                    if (n == 1) {
+                        yield 0;
+                    }
+                    int period = 2 * n - 2;
+                    int m = Math.floorMod(i, period);
+                    yield m < n ? m : period - m;
+                }
+                case WRAP -> Math.floorMod(i, n);
+                case ZERO -> -1;
+            };
+        }
+    }
+
+    public sealed interface Kernel permits Dense, Separable {
+        int radiusX();
+
+        int radiusY();
+    }
+
+    // Jądro width x height (nieparzyste wymiary) zapisane wierszami; wynik = suma / divisor
+    public record Dense(int width, int height, int[] weights, int divisor) implements Kernel {
+        public Dense {
+            if (width % 2 == 0 || height % 2 == 0 || weights.length != width * height) {
+                throw new IllegalArgumentException("Jądro musi mieć nieparzyste wymiary i " + width + "x" + height + " wag");
+            }
+            if (divisor <= 0) {
+                throw new IllegalArgumentException("Dzielnik jądra musi być dodatni: " + divisor);
+            }
+            weights = weights.clone();
+        }
+
+        @Override
+        public int radiusX() {
+            return width / 2;
+        }
+
+        @Override
+        public int radiusY() {
+            return height / 2;
+        }
+    }
+
+    // Jądro rozdzielne: najpierw wiersze (horizontal), potem kolumny (vertical); wynik = suma / divisor
+    public record Separable(int[] horizontal, int[] vertical, int divisor) implements Kernel {
+        public Separable {
+            if (horizontal.length % 2 == 0 || vertical.length % 2 == 0) {
+                throw new IllegalArgumentException("Jądro rozdzielne musi mieć nieparzystą długość");
+            }
+            if (divisor <= 0) {
+                throw new IllegalArgumentException("Dzielnik jądra musi być dodatni: " + divisor);
+            }
+            horizontal = horizontal.clone();
+            vertical = vertical.clone();
+        }
+
+        @Override
+        public int radiusX() {
+            return horizontal.length / 2;
+        }
+
+        @Override
+        public int radiusY() {
+            return vertical.length / 2;
+        }
+    }
+
+    // Operatory gradientu: pochodna [-1 0 1] wygładzana prostopadle wagami [side center side]
+    public enum Gradient {
+        SOBEL(1, 2),
+        SCHARR(3, 10);
+
+        private final int side;
+        private final int center;
+        // suma wag wygładzania jest potęgą 2 - normalizacja przesunięciem
+        private final int shift;
+
+        Gradient(int side, int center) {
+            this.side = side;
+            this.center = center;
+            this.shift = Integer.numberOfTrailingZeros(2 * side + center);
+        }
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Gradient parse(String key) {
+            for (Gradient gradient : values()) {
+                if (gradient.key().equalsIgnoreCase(key.trim())) {
+                    return gradient;
+                }
+            }
+            throw new IllegalArgumentException("Nieznany operator gradientu: " + key + " (dostępne: sobel, scharr)");
+        }
+
+        public Separable x() {
+            return new Separable(new int[]{-1, 0, 1}, new int[]{side, center, side}, 1 << shift);
+        }
+
+        public Separable y() {
+            return new Separable(new int[]{side, center, side}, new int[]{-1, 0, 1}, 1 << shift);
+        }
+    }
+
+    public static Separable box(int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("Promień musi być dodatni: " + radius);
+        }
+        int[] ones = new int[2 * radius + 1];
+        Arrays.fill(ones, 1);
+        return new Separable(ones, ones, ones.length * ones.length);
+    }
+
+    // Rozmycie Gaussa; wagi całkowite o sumie ok. 1024 w każdym kierunku, promień 3 sigma
+    public static Separable gaussian(double sigma) {
+        if (!(sigma > 0) || sigma > 100) {
+            throw new IllegalArgumentException("Sigma musi być z zakresu (0, 100]: " + sigma);
+        }
+        int radius = gaussianRadius(sigma);
+        int[] weights = new int[2 * radius + 1];
+        double[] exact = new double[weights.length];
+        double total = 0;
+        for (int i = -radius; i <= radius; i++) {
+            exact[i + radius] = Math.exp(-(i * i) / (2 * sigma * sigma));
+            total += exact[i + radius];
+        }
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (int) Math.round(exact[i] / total * 1024);
+            sum += weights[i];
+        }
+        // zaokrąglenia zmieniają sumę - różnicę dostaje środek, żeby płaski obraz pozostał bez zmian
+        weights[radius] += 1024 - sum;
+        return new Separable(weights, weights, 1024 * 1024);
+    }
+
+    public static int gaussianRadius(double sigma) {
+        return Math.max(1, (int) Math.ceil(3 * sigma));
+    }
+
+    public static Dense sharpen() {
+        return new Dense(3, 3, new int[]{0, -1, 0, -1, 5, -1, 0, -1, 0}, 1);
+    }
+
+    // Splot do nowego obrazu
+    public static BufferedImage filter(BufferedImage image, Kernel kernel, Border border, TileScheduler scheduler) {
+        BufferedImage source = IntImages.toIntImage(image);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        BufferedImage result = IntImages.create(width, height, IntImages.hasAlpha(source));
+        int[] src = IntImages.pixels(source);
+        int[] dst = IntImages.pixels(result);
+        scheduler.forEachTile(width, height, Math.max(kernel.radiusX(), kernel.radiusY()),
+                tile -> filterTile(src, dst, width, height, kernel, border, tile.x0(), tile.y0(), tile.x1(), tile.y1()));
+        return result;
+    }
+
+    // Moduł gradientu jasności |gx| + |gy| jako nieprzezroczysty obraz w skali szarości
+    public static BufferedImage gradient(BufferedImage image, Gradient operator, Border border, TileScheduler scheduler) {
+        BufferedImage source = IntImages.toIntImage(image);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        BufferedImage result = IntImages.create(width, height, false);
+        int[] src = IntImages.pixels(source);
+        int[] dst = IntImages.pixels(result);
+        scheduler.forEachTile(width, height, 1,
+                tile -> gradientTile(src, dst, width, height, operator, border, tile.x0(), tile.y0(), tile.x1(), tile.y1()));
+        return result;
+    }
+
+    // Splot fragmentu [x0, x1) x [y0, y1) obrazu width x height; czyta do promienia jądra poza fragmentem
+    public static void filterTile(int[] src, int[] dst, int width, int height, Kernel kernel, Border border,
+                                  int x0, int y0, int x1, int y1) {
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        switch (kernel) {
+            case Dense dense -> denseTile(src, dst, width, height, dense, border, x0, y0, x1, y1);
+            case Separable separable -> separableTile(src, dst, width, height, separable, border, x0, y0, x1, y1);
+        }
+    }
+
+    private static void separableTile(int[] src, int[] dst, int width, int height, Separable kernel, Border border,
+                                      int x0, int y0, int x1, int y1) {
+        int[] horizontal = kernel.horizontal();
+        int[] vertical = kernel.vertical();
+        int rx = horizontal.length / 2;
+        int ry = vertical.length / 2;
+        int kh = vertical.length;
+        int tw = x1 - x0;
+        int pw = tw + 2 * rx;
+        int stride = 3 * tw;
+        Scratch scratch = SCRATCH.get();
+        int[] planes = scratch.planes(3 * pw);
+        int[] ring = scratch.ring(kh * stride);
+        int[] acc = scratch.acc(stride);
+        int[] columns = scratch.columns(pw);
+        mapColumns(columns, x0 - rx, width, border);
+        Divider divider = new Divider(kernel.divisor());
+
+        // wiersze y0 - ry .. y1 + ry; wiersz j (licząc od y0 - ry) trafia do miejsca j % kh
+        for (int j = 0; j < kh - 1; j++) {
+            loadPlanes(src, width, height, border, y0 - ry + j, columns, planes, pw);
+            horizontalPass(planes, pw, horizontal, ring, (j % kh) * stride, tw);
+        }
+        for (int y = y0; y < y1; y++) {
+            int j = y - y0 + kh - 1;
+            loadPlanes(src, width, height, border, y0 - ry + j, columns, planes, pw);
+            horizontalPass(planes, pw, horizontal, ring, (j % kh) * stride, tw);
+
+            Arrays.fill(acc, 0, stride, 0);
+            for (int k = 0; k < kh; k++) {
+                int weight = vertical[k];
+                if (weight == 0) {
+                    continue;
+                }
+                int base = ((y - y0 + k) % kh) * stride;
+                for (int i = 0; i < stride; i++) {
+                    acc[i] += weight * ring[base + i];
+                }
+            }
+            store(acc, tw, divider, src, dst, y * width, x0);
+        }
+    }
+
+    private static void denseTile(int[] src, int[] dst, int width, int height, Dense kernel, Border border,
+                                  int x0, int y0, int x1, int y1) {
+        int kw = kernel.width();
+        int kh = kernel.height();
+        int[] weights = kernel.weights();
+        int rx = kw / 2;
+        int ry = kh / 2;
+        int tw = x1 - x0;
+        int pw = tw + 2 * rx;
+        int rowSize = 3 * pw;
+        Scratch scratch = SCRATCH.get();
+        int[] ring = scratch.ring(kh * rowSize);
+        int[] acc = scratch.acc(3 * tw);
+        int[] columns = scratch.columns(pw);
+        mapColumns(columns, x0 - rx, width, border);
+        Divider divider = new Divider(kernel.divisor());
+
+        // w buforze całe wiersze źródła z marginesem, rozłożone na kanały
+        for (int j = 0; j < kh - 1; j++) {
+            loadPlanes(src, width, height, border, y0 - ry + j, columns, ring, (j % kh) * rowSize, pw);
+        }
+        for (int y = y0; y < y1; y++) {
+            int j = y - y0 + kh - 1;
+            loadPlanes(src, width, height, border, y0 - ry + j, columns, ring, (j % kh) * rowSize, pw);
+
+            Arrays.fill(acc, 0, 3 * tw, 0);
+            for (int ky = 0; ky < kh; ky++) {
+                int row = ((y - y0 + ky) % kh) * rowSize;
+                for (int kx = 0; kx < kw; kx++) {
+                    int weight = weights[ky * kw + kx];
+                    if (weight == 0) {
+                        continue;
+                    }
+                    for (int c = 0; c < 3; c++) {
+                        int from = row + c * pw + kx;
+                        int to = c * tw;
+                        for (int x = 0; x < tw; x++) {
+                            acc[to + x] += weight * ring[from + x];
+                        }
+                    }
+                }
+            }
+            store(acc, tw, divider, src, dst, y * width, x0);
+        }
+    }
+
+    // Gradient fragmentu [x0, x1) x [y0, y1); jasność liczona raz dla każdego piksela z marginesem 1 px,
+    // w buforze cyklicznym 3 wierszy są różnice poziome i wygładzenie poziome każdego wiersza
+    public static void gradientTile(int[] src, int[] dst, int width, int height, Gradient operator, Border border,
+                                    int x0, int y0, int x1, int y1) {
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        int tw = x1 - x0;
+        int pw = tw + 2;
+        Scratch scratch = SCRATCH.get();
+        int[] gray = scratch.planes(pw);
+        int[] ring = scratch.ring(6 * tw);
+        int[] columns = scratch.columns(pw);
+        mapColumns(columns, x0 - 1, width, border);
+        int side = operator.side;
+        int center = operator.center;
+
+        // miejsce k: różnice [k * tw, ...), wygładzenie [(3 + k) * tw, ...)
+        for (int j = 0; j < 2; j++) {
+            grayRow(src, width, height, border, y0 - 1 + j, columns, gray, pw);
+            gradientRow(gray, tw, side, center, ring, j * tw, (3 + j) * tw);
+        }
+        for (int y = y0; y < y1; y++) {
+            int j = y - y0 + 2;
+            grayRow(src, width, height, border, y0 - 1 + j, columns, gray, pw);
+            gradientRow(gray, tw, side, center, ring, (j % 3) * tw, (3 + j % 3) * tw);
+            int top = (y - y0) % 3;
+            int middle = (y - y0 + 1) % 3;
+            int bottom = (y - y0 + 2) % 3;
+            PixelKernels.gradientMagnitude(ring, top * tw, middle * tw, bottom * tw, (3 + top) * tw, (3 + bottom) * tw,
+                    side, center, operator.shift, dst, y * width + x0, tw);
+        }
+    }
+
+    private static void gradientRow(int[] gray, int tw, int side, int center, int[] ring, int differences, int smoothed) {
+        for (int x = 0; x < tw; x++) {
+            int left = gray[x];
+            int middle = gray[x + 1];
+            int right = gray[x + 2];
+            ring[differences + x] = right - left;
+            ring[smoothed + x] = side * (left + right) + center * middle;
+        }
+    }
+
+    private static void horizontalPass(int[] planes, int pw, int[] weights, int[] ring, int offset, int tw) {
+        for (int c = 0; c < 3; c++) {
+            int to = offset + c * tw;
+            int from = c * pw;
+            Arrays.fill(ring, to, to + tw, 0);
+            for (int k = 0; k < weights.length; k++) {
+                int weight = weights[k];
+                if (weight == 0) {
+                    continue;
+                }
+                for (int x = 0; x < tw; x++) {
+                    ring[to + x] += weight * planes[from + k + x];
+                }
+            }
+        }
+    }
+
+    // columns[i] - kolumna źródła dla pozycji first + i (albo -1 dla ZERO)
+    private static void mapColumns(int[] columns, int first, int width, Border border) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = border.index(first + i, width);
+        }
+    }
+
+    private static void loadPlanes(int[] src, int width, int height, Border border, int y, int[] columns,
+                                   int[] planes, int pw) {
+        loadPlanes(src, width, height, border, y, columns, planes, 0, pw);
+    }
+
+    // Wiersz y (z marginesem kolumn) rozłożony na płaszczyzny R, G, B po pw wartości od offset
+    private static void loadPlanes(int[] src, int width, int height, Border border, int y, int[] columns,
+                                   int[] planes, int offset, int pw) {
+        int row = border.index(y, height);
+        if (row < 0) {
+            Arrays.fill(planes, offset, offset + 3 * pw, 0);
+            return;
+        }
+        int base = row * width;
+        for (int i = 0; i < pw; i++) {
+            int column = columns[i];
+            int p = column < 0 ? 0 : src[base + column];
+            planes[offset + i] = (p >> 16) & 0xff;
+            planes[offset + pw + i] = (p >> 8) & 0xff;
+            planes[offset + 2 * pw + i] = p & 0xff;
+        }
+    }
+
+    // Jasność (r + g + b) / 3 wiersza y z marginesem kolumn; środek wiersza liczony jednym wywołaniem grayRow
+    private static void grayRow(int[] src, int width, int height, Border border, int y, int[] columns, int[] gray, int pw) {
+        int row = border.index(y, height);
+        if (row < 0) {
+            Arrays.fill(gray, 0, pw, 0);
+            return;
+        }
+        int base = row * width;
+        // pozycje 1 .. pw - 2 to kolumny fragmentu - zawsze wewnątrz obrazu i kolejno
+        PixelKernels.grayRow(src, base + columns[1], gray, 1, pw - 2);
+        gray[0] = grayAt(src, base, columns[0]);
+        gray[pw - 1] = grayAt(src, base, columns[pw - 1]);
+    }
+
+    private static int grayAt(int[] src, int base, int column) {
+        if (column < 0) {
+            return 0;
+        }
+        int p = src[base + column];
+        return (((p >> 16) & 0xff) + ((p >> 8) & 0xff) + (p & 0xff)) / 3;
+    }
+
+    private static void store(int[] acc, int tw, Divider divider, int[] src, int[] dst, int rowOffset, int x0) {
+        for (int x = 0; x < tw; x++) {
+            int r = divider.apply(acc[x]);
+            int g = divider.apply(acc[tw + x]);
+            int b = divider.apply(acc[2 * tw + x]);
+            int i = rowOffset + x0 + x;
+            dst[i] = (src[i] & 0xff000000) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    // Dzielenie z zaokrągleniem i przycięciem do 0-255 przez mnożenie przez odwrotność (bez dzielenia przy pikselu)
+    private record Divider(int divisor, long reciprocal) {
+        Divider(int divisor) {
+            this(divisor, ((1L << 32) + divisor - 1) / divisor);
+        }
+
+        int apply(int sum) {
+            int value = (int) (((long) sum + (divisor >> 1)) * reciprocal >> 32);
+            return value < 0 ? 0 : Math.min(255, value);
+        }
+    }
+
+    private static final class Scratch {
+        private int[] planes = new int[0];
+        private int[] ring = new int[0];
+        private int[] acc = new int[0];
+        private int[] columns = new int[0];
+
+        int[] planes(int length) {
+            if (planes.length < length) planes = new int[length];
+            return planes;
+        }
+
+        int[] ring(int length) {
+            if (ring.length < length) ring = new int[length];
+            return ring;
+        }
+
+        int[] acc(int length) {
+            if (acc.length < length) acc = new int[length];
+            return acc;
+        }
+
+        // dokładnie length elementów - mapColumns wypełnia całą tablicę
+        int[] columns(int length) {
+            if (columns.length != length) columns = new int[length];
+            return columns;
+        }
+    }
+}
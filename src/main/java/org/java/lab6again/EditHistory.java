@@ -0,0 +1,61 @@
+package org.java.lab6again;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Historia edycji: krok i to łańcuch operacji od obrazu źródłowego (kilkadziesiąt bajtów zamiast kopii obrazu),
+// krok 0 to obraz bez zmian. Nowa operacja po cofnięciu usuwa kroki, które można było ponowić.
+public final class EditHistory {
+
+    private final int maxSteps;
+    private final List<OperationChain> steps = new ArrayList<>();
+    private int position;
+
+    public EditHistory(int maxSteps) {
+        this.maxSteps = maxSteps;
+        reset();
+    }
+
+    public void reset() {
+        steps.clear();
+        steps.add(OperationChain.empty());
+        position = 0;
+    }
+
+    public OperationChain current() {
+        return steps.get(position);
+    }
+
+    public void push(OperationChain chain) {
+        steps.subList(position + 1, steps.size()).clear();
+        steps.add(chain);
+        if (steps.size() > maxSteps) {
+            // najstarszy krok po obrazie źródłowym - do oryginału zawsze da się wrócić
+            steps.remove(1);
+        }
+        position = steps.size() - 1;
+    }
+
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    public boolean canRedo() {
+        return position < steps.size() - 1;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public OperationChain step(int index) {
+        return steps.get(index);
+    }
+
+    public void moveTo(int index) {
+        if (index < 0 || index >= steps.size()) {
+            throw new IllegalArgumentException("Brak kroku historii: " + index);
+        }
+        position = index;
+    }
+}
@@ -0,0 +1,147 @@
+package org.java.lab6again;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Bezstratny obrót JPEG: zamiast dekodować i kodować obraz od nowa zmieniamy tylko znacznik EXIF Orientation
+// (0x0112), który przeglądarki i programy graficzne stosują przy wyświetlaniu. Dane obrazu pozostają bez zmian.
+// Uwaga: ImageIO ignoruje ten znacznik, więc przy ponownym wczytaniu w tej aplikacji obraz nie będzie obrócony.
+public final class ExifOrientation {
+
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final int TYPE_SHORT = 3;
+
+    private ExifOrientation() {
+    }
+
+    // Złożone ułożenie łańcucha z samych obrotów i odbić; null, jeśli łańcuch zawiera inne operacje
+    public static Orientation of(OperationChain chain) {
+        Orientation orientation = Orientation.IDENTITY;
+        for (ImageOperation operation : chain.operations()) {
+            if (operation instanceof ImageOperation.Rotate rotate) {
+                orientation = orientation.then(rotate.orientation());
+            } else if (operation instanceof ImageOperation.Flip flip) {
+                orientation = orientation.then(flip.orientation());
+            } else {
+                return null;
+            }
+        }
+        return orientation;
+    }
+
+    // Kopiuje plik JPEG do output, składając jego ułożenie z transform. Zwraca false, jeśli pliku nie da się
+    // tak zmienić (np. EXIF bez znacznika Orientation) - wtedy trzeba obrócić piksele.
+    public static boolean rewrite(Path input, Path output, Orientation transform) throws IOException {
+        byte[] data = Files.readAllBytes(input);
+        if (data.length < 4 || (data[0] & 0xff) != 0xff || (data[1] & 0xff) != 0xd8) {
+            return false;
+        }
+        int insertAt = 2;
+        int pos = 2;
+        while (pos + 4 <= data.length) {
+            if ((data[pos] & 0xff) != 0xff) {
+                return false;
+            }
+            int marker = data[pos + 1] & 0xff;
+            if (marker == 0xda || marker == 0xd9) {
+                break;
+            }
+            int length = readShort(data, pos + 2, false);
+            int end = pos + 2 + length;
+            if (length < 2 || end > data.length) {
+                return false;
+            }
+            if (marker == 0xe0 && pos == 2) {
+                // APP0 (JFIF) musi pozostać pierwszym segmentem
+                insertAt = end;
+            }
+            if (marker == 0xe1 && isExif(data, pos + 4, end)) {
+                int value = orientationOffset(data, pos + 10, end);
+                if (value < 0) {
+                    return false;
+                }
+                boolean little = data[pos + 10] == 'I';
+                int current = readShort(data, value, little);
+                Orientation stored = current >= 1 && current <= 8 ? Orientation.fromExif(current) : Orientation.IDENTITY;
+                writeShort(data, value, stored.then(transform).exifValue(), little);
+                Files.write(output, data);
+                return true;
+            }
+            pos = end;
+        }
+
+        // brak EXIF - dopisujemy minimalny segment APP1 z jednym znacznikiem
+        byte[] segment = exifSegment(Orientation.IDENTITY.then(transform).exifValue());
+        byte[] result = new byte[data.length + segment.length];
+        System.arraycopy(data, 0, result, 0, insertAt);
+        System.arraycopy(segment, 0, result, insertAt, segment.length);
+        System.arraycopy(data, insertAt, result, insertAt + segment.length, data.length - insertAt);
+        Files.write(output, result);
+        return true;
+    }
+
+    private static boolean isExif(byte[] data, int offset, int end) {
+        return end - offset >= 14
+                && data[offset] == 'E' && data[offset + 1] == 'x' && data[offset + 2] == 'i' && data[offset + 3] == 'f'
+                && data[offset + 4] == 0 && data[offset + 5] == 0;
+    }
+
+    // Pozycja wartości znacznika Orientation w IFD0 albo -1
+    private static int orientationOffset(byte[] data, int tiff, int end) {
+        boolean little;
+        if (data[tiff] == 'I' && data[tiff + 1] == 'I') {
+            little = true;
+        } else if (data[tiff] == 'M' && data[tiff + 1] == 'M') {
+            little = false;
+        } else {
+            return -1;
+        }
+        long ifd = tiff + readInt(data, tiff + 4, little);
+        if (ifd < tiff || ifd + 2 > end) {
+            return -1;
+        }
+        int count = readShort(data, (int) ifd, little);
+        for (int i = 0; i < count; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                return -1;
+            }
+            if (readShort(data, entry, little) == ORIENTATION_TAG) {
+                return readShort(data, entry + 2, little) == TYPE_SHORT ? entry + 8 : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] exifSegment(int orientation) {
+        return new byte[]{
+                (byte) 0xff, (byte) 0xe1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                // nagłówek TIFF (big-endian), IFD0 zaraz za nim
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                // jeden wpis: Orientation, SHORT, 1 wartość
+                0, 1,
+                0x01, 0x12, 0, TYPE_SHORT, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                // brak kolejnego IFD
+                0, 0, 0, 0
+        };
+    }
+
+    private static int readShort(byte[] data, int offset, boolean little) {
+        int a = data[offset] & 0xff;
+        int b = data[offset + 1] & 0xff;
+        return little ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static long readInt(byte[] data, int offset, boolean little) {
+        long high = readShort(data, offset + (little ? 2 : 0), little);
+        long low = readShort(data, offset + (little ? 0 : 2), little);
+        return (high << 16) | low;
+    }
+
+    private static void writeShort(byte[] data, int offset, int value, boolean little) {
+        data[offset + (little ? 0 : 1)] = (byte) value;
+        data[offset + (little ? 1 : 0)] = (byte) (value >> 8);
+    }
+}
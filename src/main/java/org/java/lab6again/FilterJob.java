@@ -0,0 +1,53 @@
+package org.java.lab6again;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+
+// Zadanie filtrujące w tle. Wynik jest gotowy dopiero, gdy wszystkie kafelki się zakończyły
+// (także po anulowaniu - wtedy wynik kończy się wyjątkiem CancellationException).
+public final class FilterJob<T> {
+
+    private final JobContext context;
+    private final CompletableFuture<T> result;
+
+    private FilterJob(TileScheduler scheduler, DoubleConsumer progressListener, Function<TileScheduler, T> work) {
+        this.context = new JobContext(progressListener);
+        TileScheduler jobScheduler = scheduler.forJob(context);
+        this.result = scheduler.submit(() -> {
+            context.checkCancelled();
+            T value = work.apply(jobScheduler);
+            context.checkCancelled();
+            return value;
+        });
+    }
+
+    // work dostaje harmonogram powiązany z zadaniem - wszystkie filtry uruchomione przez niego raportują postęp
+    public static <T> FilterJob<T> submit(TileScheduler scheduler, DoubleConsumer progressListener,
+                                          Function<TileScheduler, T> work) {
+        return new FilterJob<>(scheduler, progressListener, work);
+    }
+
+    public CompletableFuture<T> result() {
+        return result;
+    }
+
+    public double progress() {
+        return context.progress();
+    }
+
+    public void cancel() {
+        context.cancel();
+    }
+
+    public boolean isCancelled() {
+        return context.isCancelled();
+    }
+
+    public static boolean isCancellation(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof CancellationException;
+    }
+}
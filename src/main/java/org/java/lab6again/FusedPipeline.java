@@ -0,0 +1,167 @@
+package org.java.lab6again;
+
+import org.java.lab6again.ImageOperation.GeometricOperation;
+import org.java.lab6again.ImageOperation.PointOperation;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Łańcuch operacji skompilowany do etapów:
+//  - sąsiednie operacje punktowe składają się w jedną tablicę przekodowań (PointLut) wykonywaną jednym przebiegiem,
+//  - sąsiednie obroty, odbicia i skalowania składają się w jedno ułożenie (obrót o wielokrotność 90 stopni
+//    z ewentualnym odbiciem, bez strat) i jedno skalowanie do docelowego rozmiaru.
+public final class FusedPipeline {
+
+    private final List<Stage> stages;
+    // nazwy etapów w pomiarach, np. "gamma+threshold" dla złożonej tablicy
+    private final List<String> names;
+
+    private FusedPipeline(List<Stage> stages, List<String> names) {
+        this.stages = List.copyOf(stages);
+        this.names = List.copyOf(names);
+    }
+
+    private sealed interface Stage permits PointStage, GeometricStage, SingleStage {
+        // owned - czy obraz jest kopią roboczą potoku i można go nadpisać
+        BufferedImage apply(BufferedImage image, TileScheduler scheduler, boolean owned);
+    }
+
+    public static FusedPipeline compile(List<ImageOperation> operations) {
+        List<Stage> stages = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int i = 0;
+        while (i < operations.size()) {
+            ImageOperation operation = operations.get(i);
+            if (operation instanceof PointOperation) {
+                List<PointOperation> group = new ArrayList<>();
+                while (i < operations.size() && operations.get(i) instanceof PointOperation point) {
+                    group.add(point);
+                    i++;
+                }
+                stages.add(PointStage.of(group));
+                names.add(name(group));
+            } else if (operation instanceof GeometricOperation) {
+                List<GeometricOperation> group = new ArrayList<>();
+                while (i < operations.size() && operations.get(i) instanceof GeometricOperation geometric) {
+                    group.add(geometric);
+                    i++;
+                }
+                stages.add(GeometricStage.of(group));
+                names.add(name(group));
+            } else {
+                stages.add(new SingleStage(operation));
+                names.add(operation.name());
+                i++;
+            }
+        }
+        return new FusedPipeline(stages, names);
+    }
+
+    static String name(List<? extends ImageOperation> group) {
+        return group.stream().map(ImageOperation::name).collect(Collectors.joining("+"));
+    }
+
+    public int stageCount() {
+        return stages.size();
+    }
+
+    // inPlace - czy wolno nadpisać obraz wejściowy (np. świeżo zdekodowany plik w trybie wsadowym)
+    public BufferedImage apply(BufferedImage image, TileScheduler scheduler, boolean inPlace) {
+        BufferedImage result = image;
+        boolean owned = inPlace;
+        for (int i = 0; i < stages.size(); i++) {
+            Metrics.Sample sample = Metrics.global().start(names.get(i));
+            BufferedImage next = stages.get(i).apply(result, scheduler, owned);
+            sample.stop(result.getWidth(), result.getHeight());
+            owned = owned || next != result;
+            result = next;
+        }
+        return result;
+    }
+
+    // single - pojedyncza operacja z własnym (wektorowym) jądrem, w przeciwnym razie złożona tablica lut
+    private record PointStage(PointOperation single, PointLut lut) implements Stage {
+
+        static PointStage of(List<PointOperation> operations) {
+            return operations.size() == 1 && operations.get(0).hasKernel()
+                    ? new PointStage(operations.get(0), null)
+                    : new PointStage(null, PointLut.compose(operations));
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler, boolean owned) {
+            BufferedImage source = IntImages.toIntImage(image);
+            BufferedImage target = owned || source != image
+                    ? source
+                    : IntImages.create(source.getWidth(), source.getHeight(), IntImages.hasAlpha(source));
+            int[] src = IntImages.pixels(source);
+            int[] dst = IntImages.pixels(target);
+            scheduler.forEachSpan(src.length, (from, to) -> {
+                if (lut == null) {
+                    single.applyPixels(src, dst, from, to);
+                } else {
+                    lut.apply(src, dst, from, to);
+                }
+            });
+            return target;
+        }
+    }
+
+    // orientation - złożone obroty i odbicia; width/height - rozmiar końcowy lub -1 bez skalowania;
+    // filter - metoda ostatniego skalowania w grupie
+    private record GeometricStage(Orientation orientation, int width, int height, Resampler.Filter filter) implements Stage {
+
+        static GeometricStage of(List<GeometricOperation> operations) {
+            Orientation orientation = Orientation.IDENTITY;
+            int width = -1;
+            int height = -1;
+            Resampler.Filter filter = Resampler.DEFAULT_FILTER;
+            for (GeometricOperation operation : operations) {
+                switch (operation) {
+                    case ImageOperation.Rotate rotate -> {
+                        orientation = orientation.then(rotate.orientation());
+                        // skalowanie przed obrotem o 90 stopni = obrót i skalowanie do zamienionych wymiarów
+                        if (rotate.orientation().swapsDimensions() && width > 0) {
+                            int tmp = width;
+                            width = height;
+                            height = tmp;
+                        }
+                    }
+                    // odbicie nie zmienia wymiarów, więc jest przemienne ze skalowaniem
+                    case ImageOperation.Flip flip -> orientation = orientation.then(flip.orientation());
+                    case ImageOperation.Scale scale -> {
+                        width = scale.width();
+                        height = scale.height();
+                        filter = scale.filter();
+                    }
+                }
+            }
+            return new GeometricStage(orientation, width, height, filter);
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler, boolean owned) {
+            if (width < 0) {
+                return ImageFilters.orient(image, orientation, scheduler, owned);
+            }
+            long sourcePixels = (long) image.getWidth() * image.getHeight();
+            long targetPixels = (long) width * height;
+            if (targetPixels < sourcePixels) {
+                // pomniejszenie - najpierw skalujemy, żeby obracać mniejszy obraz
+                boolean swap = orientation.swapsDimensions();
+                BufferedImage scaled = ImageFilters.scale(image, swap ? height : width, swap ? width : height, filter, scheduler);
+                return ImageFilters.orient(scaled, orientation, scheduler, owned || scaled != image);
+            }
+            return ImageFilters.scale(ImageFilters.orient(image, orientation, scheduler, owned), width, height, filter, scheduler);
+        }
+    }
+
+    private record SingleStage(ImageOperation operation) implements Stage {
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler, boolean owned) {
+            return operation.apply(image, scheduler);
+        }
+    }
+}
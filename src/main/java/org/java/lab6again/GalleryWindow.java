@@ -0,0 +1,431 @@
+package org.java.lab6again;
+
+import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Screen;
+import javafx.stage.Stage;
+import org.controlsfx.control.GridCell;
+import org.controlsfx.control.GridView;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Tryb galerii: miniatury plików JPG z folderu w siatce (GridView tworzy komórki tylko dla widocznych miniatur,
+// więc tylko one są dekodowane) i jeden łańcuch operacji wykonywany równolegle na zaznaczonych obrazach,
+// z postępem dla każdego z nich. Wyniki trafiają do wybranego folderu, a ich miniatury są pokazywane obok
+// oryginałów. Dwuklik otwiera obraz w głównym oknie.
+final class GalleryWindow {
+
+    private static final Logger logger = Logger.getLogger(GalleryWindow.class.getName());
+    // bok kwadratu, w który wpisana jest miniatura
+    private static final int THUMBNAIL_SIZE = 140;
+    private static final int THUMBNAIL_CAPACITY = Integer.getInteger("lab6.thumbnails", 500);
+    // jak domyślnie przy zapisie w głównym oknie
+    private static final float JPEG_QUALITY = 0.9f;
+    // część paska postępu obrazu na operacje; reszta to zapis pliku
+    private static final double FILTER_SHARE = 0.9;
+    // obrazy w pamięci naraz (oryginał i wynik w pełnej rozdzielczości): filtry każdego z nich i tak zajmują
+    // wszystkie rdzenie, więc jak w trybie wsadowym wystarczy jeden w filtrach i drugi w dekodowaniu lub zapisie
+    private static final int IMAGES_IN_FLIGHT = Math.max(1, Integer.getInteger("lab6.gallery-images", 2));
+    private static final List<String> PRESETS = List.of("negative", "grayscale", "threshold:128", "edges",
+            "edges:scharr", "blur:2", "sharpen", "rotate:90", "rotate:-90", "flip:h", "scale:1024x768");
+
+    private final Stage stage = new Stage();
+    private final AsyncImageIo imageIo;
+    private final Consumer<Path> openInEditor;
+    private final ThumbnailCache thumbnails;
+    // bok miniatury w pikselach ekranu (na ekranach HiDPI większy niż THUMBNAIL_SIZE)
+    private final int thumbnailPixels;
+    // zadania dla całych obrazów, najwyżej IMAGES_IN_FLIGHT naraz; kafelki filtrów idą na wspólny harmonogram
+    private final ExecutorService workers;
+    private final ObservableList<Item> items = FXCollections.observableArrayList();
+    private final GridView<Item> grid = new GridView<>(items);
+    private final ComboBox<String> operationBox = new ComboBox<>();
+    private final Button folderButton = new Button("Wybierz folder");
+    private final Button selectAllButton = new Button("Zaznacz wszystkie");
+    private final Button selectNoneButton = new Button("Odznacz");
+    private final Button runButton = new Button("Wykonaj na zaznaczonych");
+    private final Button cancelButton = new Button("Anuluj");
+    private final Label summary = new Label();
+    private Path folder = null;
+    private Path outputDir = null;
+    // zadania bieżącego uruchomienia (tylko wątek JavaFX)
+    private final List<JobContext> running = new ArrayList<>();
+    private int total = 0;
+    private int finished = 0;
+    private int failed = 0;
+
+    private static final class Item {
+        final Path file;
+        final BooleanProperty selected = new SimpleBooleanProperty(false);
+        final BooleanProperty busy = new SimpleBooleanProperty(false);
+        final DoubleProperty progress = new SimpleDoubleProperty(0);
+        final StringProperty status = new SimpleStringProperty("");
+        final ObjectProperty<Image> result = new SimpleObjectProperty<>();
+
+        Item(Path file) {
+            this.file = file;
+        }
+    }
+
+    GalleryWindow(Stage owner, AsyncImageIo imageIo, Consumer<Path> openInEditor) {
+        this.imageIo = imageIo;
+        this.openInEditor = openInEditor;
+        this.thumbnailPixels = (int) Math.ceil(THUMBNAIL_SIZE * Screen.getPrimary().getOutputScaleX());
+        this.thumbnails = new ThumbnailCache(thumbnailPixels, THUMBNAIL_CAPACITY, 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(IMAGES_IN_FLIGHT, task -> {
+            Thread thread = new Thread(task, "galeria-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Metrics.global().registerPool("galeria", workers);
+
+        operationBox.getItems().addAll(PRESETS);
+        operationBox.setEditable(true);
+        operationBox.setPromptText("Operacje, np. threshold:128,edges");
+        operationBox.setPrefWidth(240);
+
+        folderButton.setOnAction(e -> {
+            DirectoryChooser chooser = new DirectoryChooser();
+            chooser.setTitle("Wybierz folder z obrazami JPG");
+            if (folder != null) {
+                chooser.setInitialDirectory(folder.toFile());
+            }
+            File selected = chooser.showDialog(stage);
+            if (selected != null) {
+                openFolder(selected.toPath());
+            }
+        });
+        selectAllButton.setOnAction(e -> items.forEach(item -> item.selected.set(true)));
+        selectNoneButton.setOnAction(e -> items.forEach(item -> item.selected.set(false)));
+        runButton.setOnAction(e -> run());
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(e -> running.forEach(JobContext::cancel));
+
+        HBox controls = new HBox(10, folderButton, selectAllButton, selectNoneButton, operationBox, runButton, cancelButton, summary);
+        controls.setAlignment(Pos.CENTER_LEFT);
+        controls.setPadding(new Insets(10));
+
+        grid.setCellFactory(view -> new Cell());
+        grid.setCellWidth(2 * THUMBNAIL_SIZE + 12);
+        grid.setCellHeight(THUMBNAIL_SIZE + 80);
+        grid.setHorizontalCellSpacing(8);
+        grid.setVerticalCellSpacing(8);
+
+        BorderPane root = new BorderPane(grid);
+        root.setTop(controls);
+        stage.initOwner(owner);
+        stage.setTitle("Galeria");
+        stage.setScene(new Scene(root, 1000, 700));
+        // anulowane zadania kończą tylko bieżący kafelek, kolejne nie startują
+        stage.setOnHidden(e -> {
+            running.forEach(JobContext::cancel);
+            workers.shutdown();
+            Metrics.global().unregisterPool("galeria", workers);
+            thumbnails.close();
+        });
+    }
+
+    // folder - null, jeśli ma zostać wybrany przyciskiem
+    void show(Path folder) {
+        stage.show();
+        if (folder != null) {
+            openFolder(folder);
+        }
+    }
+
+    private void openFolder(Path selected) {
+        if (!running.isEmpty()) {
+            showToast("Poczekaj na zakończenie albo anuluj przetwarzanie", Alert.AlertType.WARNING);
+            return;
+        }
+        imageIo.listDirectory(selected).whenComplete((files, ex) -> Platform.runLater(() -> {
+            if (ex != null) {
+                showToast("Nie udało się odczytać folderu", Alert.AlertType.ERROR);
+                logger.log(Level.SEVERE, "Nie udało się odczytać folderu " + selected, ex);
+                return;
+            }
+            folder = selected;
+            items.setAll(files.stream().map(Item::new).toList());
+            stage.setTitle("Galeria - " + selected);
+            summary.setText(files.size() + " obrazów");
+            logger.info("Wykonano operację: Otwarcie galerii " + selected);
+        }));
+    }
+
+    private void run() {
+        OperationChain chain;
+        try {
+            String spec = operationBox.getEditor().getText();
+            chain = OperationChain.parse(spec == null ? "" : spec.trim());
+        } catch (IllegalArgumentException e) {
+            showToast(e.getMessage(), Alert.AlertType.ERROR);
+            return;
+        }
+        if (chain.isEmpty()) {
+            showToast("Nie wybrano operacji do wykonania", Alert.AlertType.WARNING);
+            return;
+        }
+        List<Item> selected = items.stream().filter(item -> item.selected.get()).toList();
+        if (selected.isEmpty()) {
+            showToast("Nie zaznaczono żadnego obrazu", Alert.AlertType.WARNING);
+            return;
+        }
+        Path target = chooseOutputDir();
+        if (target == null) {
+            return;
+        }
+        selected = withoutOverwriting(selected, target);
+        if (selected == null) {
+            return;
+        }
+
+        total = selected.size();
+        finished = 0;
+        failed = 0;
+        updateSummary();
+        setRunning(true);
+        logger.info("Wykonano operację: " + chain.spec() + " na " + total + " obrazach z galerii");
+        for (Item item : selected) {
+            item.result.set(null);
+            item.busy.set(true);
+            item.progress.set(ProgressBar.INDETERMINATE_PROGRESS);
+            item.status.set("W kolejce");
+            JobContext context = new JobContext(progress -> Platform.runLater(() -> item.progress.set(progress * FILTER_SHARE)));
+            running.add(context);
+            long start = System.nanoTime();
+            CompletableFuture.supplyAsync(() -> process(item, chain, target, context), workers)
+                    .whenComplete((image, ex) -> Platform.runLater(() -> {
+                        running.remove(context);
+                        item.busy.set(false);
+                        finished++;
+                        if (ex == null) {
+                            item.result.set(image);
+                            item.status.set("Gotowe (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+                        } else if (FilterJob.isCancellation(ex)) {
+                            item.status.set("Anulowano");
+                        } else {
+                            failed++;
+                            item.status.set("Błąd");
+                            logger.log(Level.SEVERE, "Nie udało się przetworzyć pliku " + item.file, ex);
+                        }
+                        updateSummary();
+                        if (running.isEmpty()) {
+                            setRunning(false);
+                        }
+                    }));
+        }
+    }
+
+    // Na wątku puli galerii: dekodowanie (postęp nieokreślony), operacje z postępem w kafelkach wszystkich etapów,
+    // zapis i miniatura wyniku
+    private Image process(Item item, OperationChain chain, Path target, JobContext context) {
+        context.checkCancelled();
+        status(item, "Wczytywanie", ProgressBar.INDETERMINATE_PROGRESS);
+        try {
+            BufferedImage image = ImageCodecs.read(item.file);
+            context.checkCancelled();
+            status(item, "Przetwarzanie", 0);
+            BufferedImage result = chain.apply(image, TileScheduler.shared().forJob(context), true);
+            context.checkCancelled();
+            status(item, "Zapis", FILTER_SHARE);
+            ImageCodecs.write(result, targetFile(target, item), "jpg", JPEG_QUALITY);
+            return SwingFXUtils.toFXImage(ThumbnailCache.fit(result, thumbnailPixels), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path targetFile(Path target, Item item) {
+        return target.resolve(item.file.getFileName());
+    }
+
+    // Obrazy, których wyniki już są w folderze, zostają nadpisane albo pominięte według wyboru;
+    // null - anulowano
+    private List<Item> withoutOverwriting(List<Item> selected, Path target) {
+        List<Item> existing = selected.stream().filter(item -> Files.exists(targetFile(target, item))).toList();
+        if (existing.isEmpty()) {
+            return selected;
+        }
+        ButtonType overwrite = new ButtonType("Nadpisz");
+        ButtonType skip = new ButtonType("Pomiń istniejące");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION,
+                "W folderze " + target + " są już pliki o nazwach " + existing.size() + " z " + selected.size()
+                        + " zaznaczonych obrazów.", overwrite, skip, ButtonType.CANCEL);
+        alert.initOwner(stage);
+        alert.setTitle("Pliki już istnieją");
+        alert.setHeaderText("Nadpisać istniejące pliki?");
+        ButtonType choice = alert.showAndWait().orElse(ButtonType.CANCEL);
+        if (choice == overwrite) {
+            return selected;
+        }
+        if (choice != skip) {
+            return null;
+        }
+        existing.forEach(item -> item.status.set("Pominięto - plik istnieje"));
+        List<Item> remaining = selected.stream().filter(item -> !existing.contains(item)).toList();
+        if (remaining.isEmpty()) {
+            showToast("Wszystkie zaznaczone obrazy mają już wyniki w tym folderze", Alert.AlertType.INFORMATION);
+            return null;
+        }
+        return remaining;
+    }
+
+    private static void status(Item item, String status, double progress) {
+        Platform.runLater(() -> {
+            item.status.set(status);
+            item.progress.set(progress);
+        });
+    }
+
+    // Folder na wyniki, zapamiętywany do następnego uruchomienia; nie może to być folder z oryginałami
+    private Path chooseOutputDir() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Folder na wyniki");
+        Path initial = outputDir != null ? outputDir : folder;
+        if (initial != null && Files.isDirectory(initial)) {
+            chooser.setInitialDirectory(initial.toFile());
+        }
+        File selected = chooser.showDialog(stage);
+        if (selected == null) {
+            return null;
+        }
+        Path target = selected.toPath().toAbsolutePath();
+        if (folder != null && target.equals(folder.toAbsolutePath())) {
+            showToast("Wyniki nie mogą nadpisać oryginałów - wybierz inny folder", Alert.AlertType.ERROR);
+            return null;
+        }
+        outputDir = target;
+        return target;
+    }
+
+    private void setRunning(boolean active) {
+        runButton.setDisable(active);
+        folderButton.setDisable(active);
+        cancelButton.setDisable(!active);
+    }
+
+    private void updateSummary() {
+        summary.setText("Przetworzono " + finished + " z " + total + (failed > 0 ? " (błędy: " + failed + ")" : ""));
+    }
+
+    private void showToast(String message, Alert.AlertType type) {
+        Alert alert = new Alert(type);
+        alert.initOwner(stage);
+        alert.setTitle("Komunikat");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    // Komórka siatki: miniatura oryginału i wyniku, zaznaczenie z nazwą pliku, postęp i stan przetwarzania.
+    // Komórki są używane ponownie przy przewijaniu - miniatura, o którą prosiła poprzednio, jest zwalniana.
+    private final class Cell extends GridCell<Item> {
+        private final ImageView original = new ImageView();
+        private final ImageView processed = new ImageView();
+        private final CheckBox name = new CheckBox();
+        private final ProgressBar progress = new ProgressBar();
+        private final Label status = new Label();
+        private final VBox content;
+        private Item bound = null;
+        private CompletableFuture<Image> thumbnail = null;
+
+        Cell() {
+            for (ImageView view : List.of(original, processed)) {
+                view.setFitWidth(THUMBNAIL_SIZE);
+                view.setFitHeight(THUMBNAIL_SIZE);
+                view.setPreserveRatio(true);
+            }
+            HBox images = new HBox(4, original, processed);
+            images.setPrefHeight(THUMBNAIL_SIZE);
+            images.setAlignment(Pos.CENTER_LEFT);
+            name.setMaxWidth(2 * THUMBNAIL_SIZE);
+            progress.setMaxWidth(Double.MAX_VALUE);
+            content = new VBox(4, images, name, progress, status);
+            setOnMouseClicked(e -> {
+                if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2 && bound != null) {
+                    openInEditor.accept(bound.file);
+                }
+            });
+        }
+
+        @Override
+        protected void updateItem(Item item, boolean empty) {
+            super.updateItem(item, empty);
+            Item next = empty ? null : item;
+            if (next == bound) {
+                return;
+            }
+            unbind();
+            bound = next;
+            if (next == null) {
+                setGraphic(null);
+                return;
+            }
+            name.setText(next.file.getFileName().toString());
+            name.selectedProperty().bindBidirectional(next.selected);
+            progress.progressProperty().bind(next.progress);
+            progress.visibleProperty().bind(next.busy);
+            status.textProperty().bind(next.status);
+            processed.imageProperty().bind(next.result);
+            original.setImage(null);
+            thumbnail = thumbnails.request(next.file);
+            thumbnail.thenAccept(image -> {
+                if (bound == next) {
+                    original.setImage(image);
+                }
+            });
+            setGraphic(content);
+        }
+
+        private void unbind() {
+            if (bound == null) {
+                return;
+            }
+            name.selectedProperty().unbindBidirectional(bound.selected);
+            progress.progressProperty().unbind();
+            progress.visibleProperty().unbind();
+            status.textProperty().unbind();
+            processed.imageProperty().unbind();
+            // gotowa miniatura (także z pamięci) nie jest już niczyim oczekiwaniem
+            if (!thumbnail.isDone()) {
+                thumbnails.release(bound.file);
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ public class HelloApplication extends Application {
     }
 
     public static void main(String[] args) {
+        Metrics.exportFromSystemProperties();
         launch();
     }
 }
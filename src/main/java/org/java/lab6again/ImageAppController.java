@@ -1,24 +1,34 @@
 package org.java.lab6again;
 
+import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
+import javafx.stage.Screen;
 import javafx.stage.Stage;
 
-import javax.imageio.ImageIO;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 import java.util.logging.*;
 
 public class ImageAppController {
@@ -32,19 +42,63 @@ public class ImageAppController {
     private Button scaleButton = new Button("Skaluj obraz");
     private Button rotateLeftButton = new Button("\u21ba");
     private Button rotateRightButton = new Button("\u21bb");
+    private Button flipHorizontalButton = new Button("\u21c6");
+    private Button flipVerticalButton = new Button("\u21c5");
+    private Button previousFileButton = new Button("\u25c0");
+    private Button nextFileButton = new Button("\u25b6");
+    private Button galleryButton = new Button("Galeria");
+    private Button undoButton = new Button("Cofnij");
+    private Button redoButton = new Button("Ponów");
+    private Button cancelButton = new Button("Anuluj");
+    private ProgressBar progressBar = new ProgressBar(0);
+    // komunikaty o powodzeniu - bez okna modalnego, które wstrzymywałoby pracę do kliknięcia
+    private Label statusLabel = new Label();
+    private FilterJob<?> currentJob = null;
+    private int jobGeneration = 0;
     private boolean operationApplied = false;
     private static final Logger logger = Logger.getLogger(ImageAppController.class.getName());
-    private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final TileScheduler scheduler = TileScheduler.shared();
     private File loadedFile = null;
+    // szerokość widoków obrazu; podgląd liczony jest na kopii tej wielkości (z uwzględnieniem skali ekranu)
+    private static final int PREVIEW_WIDTH = 300;
+    // obraz źródłowy zdekodowany raz przy wczytaniu i łańcuch operacji, którego wynik jest wyświetlany
+    private BufferedImage sourceImage = null;
+    private OperationChain appliedChain = OperationChain.empty();
+    // podgląd: kopia źródła i wynik appliedChain w rozmiarze widoku
+    private BufferedImage sourceProxy = null;
+    private BufferedImage currentProxy = null;
+    // wymiary wyniku appliedChain w pełnej rozdzielczości
+    private Dimension fullSize = new Dimension();
+    // ostatni policzony wynik w pełnej rozdzielczości i jego łańcuch (może być o krok lub kilka w tyle za podglądem)
+    private BufferedImage fullImage = null;
+    private OperationChain fullChain = OperationChain.empty();
+    // kroki edycji to same łańcuchy operacji, a ich wyniki są skompresowane w pamięci (budżet: -Dlab6.history-mb)
+    private static final long HISTORY_BUDGET = Long.getLong("lab6.history-mb", 256) * 1024 * 1024;
+    private final EditHistory history = new EditHistory(100);
+    // krok historii pokazany w widoku (appliedChain); kursor historii wyprzedza go, dopóki liczy się podgląd
+    // przywracanego kroku
+    private int shownStep = 0;
+    private SnapshotCache snapshots = new SnapshotCache(HISTORY_BUDGET);
+    // wyniki łańcuchów dla skrótu pliku źródłowego, także z poprzednich uruchomień (na dysku)
+    private final ResultCache results = ResultCache.fromSystemProperties();
     private double originalWidth = 0;
     private double originalHeight = 0;
+    // dekodowanie i zapis plików poza wątkiem JavaFX; liczba kolejnych plików z folderu dekodowanych z wyprzedzeniem
+    private static final int PREFETCH_FILES = Integer.getInteger("lab6.prefetch", 2);
+    private final AsyncImageIo imageIo = new AsyncImageIo(2);
+    private List<Path> folderFiles = List.of();
+    private int loadGeneration = 0;
+    // ostatnie wczytanie, którego pełny obraz jest już pokazany
+    private int shownGeneration = 0;
+    private float jpegQuality = 0.9f;
 
     public void initialize(Stage stage) {
         setupLogger();
         logger.info("Uruchomiono aplikację.");
         stage.setOnCloseRequest(event -> {
+            imageIo.close();
+            results.close();
             logger.info("Zamknięto aplikację.");
-            executor.shutdown(); // zamknięcie wątków
         });
 
         Image logo = new Image("logo.png");
@@ -64,7 +118,8 @@ public class ImageAppController {
 
         VBox top = new VBox(5, header, subtitle);
 
-        operationBox.getItems().addAll("Negatyw", "Progowanie", "Konturowanie");
+        operationBox.getItems().addAll("Negatyw", "Progowanie", "Konturowanie", "Skala szarości",
+                "Jasność i kontrast", "Gamma", "Poziomy", "Konturowanie (Scharr)", "Rozmycie", "Wyostrzanie");
         operationBox.setPromptText("Wybierz operację");
         operationBox.setPrefWidth(200);
 
@@ -76,14 +131,12 @@ public class ImageAppController {
                 return;
             }
 
-            Image sourceImage = originalImageView.getImage();
             if (sourceImage == null) {
                 showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
                 return;
             }
 
             try {
-                BufferedImage bufferedImage = SwingFXUtils.fromFXImage(sourceImage, null);
                 switch (selected) {
                     case "Negatyw":
                         applyNegative();
@@ -92,7 +145,28 @@ public class ImageAppController {
                         showThresholdDialog();
                         break;
                     case "Konturowanie":
-                        applyEdgeDetection();
+                        applyEdgeDetection(Convolution.Gradient.SOBEL);
+                        break;
+                    case "Konturowanie (Scharr)":
+                        applyEdgeDetection(Convolution.Gradient.SCHARR);
+                        break;
+                    case "Rozmycie":
+                        showBlurDialog();
+                        break;
+                    case "Wyostrzanie":
+                        applySharpen();
+                        break;
+                    case "Skala szarości":
+                        applyGrayscale();
+                        break;
+                    case "Jasność i kontrast":
+                        showBrightnessContrastDialog();
+                        break;
+                    case "Gamma":
+                        showGammaDialog();
+                        break;
+                    case "Poziomy":
+                        showLevelsDialog();
                         break;
                     default:
                         showToast("Operacja '" + selected + "' nie jest jeszcze zaimplementowana", Alert.AlertType.WARNING);
@@ -111,42 +185,24 @@ public class ImageAppController {
             File selectedFile = fileChooser.showOpenDialog(stage);
 
             if (selectedFile != null) {
-                try {
-                    if (!selectedFile.getName().toLowerCase().endsWith(".jpg")) {
-                        showToast("Niedozwolony format pliku", Alert.AlertType.ERROR);
-                        logger.log(Level.SEVERE, "Wybrano niedozwolony format pliku.");
-                        return;
-                    }
-
-                    Image img = new Image(new FileInputStream(selectedFile));
-
-                    originalImageView.setImage(img);
-                    originalImageView.setFitWidth(300);
-                    originalImageView.setPreserveRatio(true);
-
-                    processedImageView.setImage(null);
-
-                    originalWidth = img.getWidth();
-                    originalHeight = img.getHeight();
-
-                    loadedFile = selectedFile;
-
-                    executeButton.setDisable(false);
-                    saveButton.setDisable(false);
-                    scaleButton.setDisable(false);
-                    rotateLeftButton.setDisable(false);
-                    rotateRightButton.setDisable(false);
-
-                    showToast("Pomyślnie załadowano plik", Alert.AlertType.INFORMATION);
-                    logger.info("Wykonano operację: Załadowanie obrazu");
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    showToast("Nie udało się załadować pliku", Alert.AlertType.ERROR);
-                    logger.log(Level.SEVERE, "Nie udało się załadować pliku: " + e);
-                }
+                openFile(selectedFile.toPath());
             }
         });
 
+        previousFileButton.setDisable(true);
+        nextFileButton.setDisable(true);
+        previousFileButton.setTooltip(new Tooltip("Poprzedni obraz w folderze"));
+        nextFileButton.setTooltip(new Tooltip("Następny obraz w folderze"));
+        previousFileButton.setOnAction(e -> openNeighbour(-1));
+        nextFileButton.setOnAction(e -> openNeighbour(1));
+
+        // galeria otwiera folder bieżącego obrazu; dwuklik na miniaturze wczytuje obraz w tym oknie
+        galleryButton.setTooltip(new Tooltip("Miniatury folderu i przetwarzanie wielu obrazów naraz"));
+        galleryButton.setOnAction(e -> new GalleryWindow(stage, imageIo, file -> {
+            stage.toFront();
+            openFile(file);
+        }).show(loadedFile == null ? null : loadedFile.toPath().toAbsolutePath().getParent()));
+
 
         saveButton.setDisable(true);
         saveButton.setOnAction(e -> showSaveDialog(stage));
@@ -160,7 +216,26 @@ public class ImageAppController {
         rotateLeftButton.setOnAction(e -> rotateImage(-90));
         rotateRightButton.setOnAction(e -> rotateImage(90));
 
-        HBox controls = new HBox(10, loadButton, operationBox, executeButton, saveButton, scaleButton, rotateLeftButton, rotateRightButton);
+        flipHorizontalButton.setDisable(true);
+        flipVerticalButton.setDisable(true);
+        flipHorizontalButton.setTooltip(new Tooltip("Odbij w poziomie"));
+        flipVerticalButton.setTooltip(new Tooltip("Odbij w pionie"));
+
+        flipHorizontalButton.setOnAction(e -> flipImage(true));
+        flipVerticalButton.setOnAction(e -> flipImage(false));
+
+        undoButton.setOnAction(e -> undo());
+        redoButton.setOnAction(e -> redo());
+        updateHistoryButtons();
+
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(e -> {
+            if (currentJob != null) currentJob.cancel();
+        });
+        progressBar.setVisible(false);
+        progressBar.setPrefWidth(120);
+
+        HBox controls = new HBox(10, loadButton, previousFileButton, nextFileButton, galleryButton, operationBox, executeButton, saveButton, scaleButton, rotateLeftButton, rotateRightButton, flipHorizontalButton, flipVerticalButton, undoButton, redoButton, progressBar, cancelButton);
         controls.setPadding(new Insets(10));
 
         Label originalLabel = new Label("Oryginalny obraz:");
@@ -169,7 +244,8 @@ public class ImageAppController {
         VBox imageBox = new VBox(10, originalLabel, originalImageView, processedLabel, processedImageView);
         imageBox.setPadding(new Insets(10));
 
-        VBox mainContent = new VBox(10, controls, imageBox);
+        statusLabel.setPadding(new Insets(0, 10, 0, 10));
+        VBox mainContent = new VBox(10, controls, statusLabel, imageBox);
 
         BorderPane root = new BorderPane();
         root.setTop(top);
@@ -184,33 +260,182 @@ public class ImageAppController {
         root.setBottom(footer);
 
         Scene scene = new Scene(root, 900, 700);
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN), this::undo);
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN), this::redo);
         stage.setTitle("Image Filter App");
         stage.setScene(scene);
         stage.show();
     }
 
     private void rotateImage(int angle) {
-        Image source = processedImageView.getImage();
-        if (source == null) source = originalImageView.getImage();
-        if (source == null) {
+        if (sourceImage == null) {
             showToast("Brak obrazu do obrócenia", Alert.AlertType.ERROR);
             logger.log(Level.SEVERE, "Brak obrazu do obrócenia");
             return;
         }
-        BufferedImage bufferedImage = SwingFXUtils.fromFXImage(source, null);
-        int w = bufferedImage.getWidth();
-        int h = bufferedImage.getHeight();
-        BufferedImage rotatedImage = new BufferedImage(h, w, BufferedImage.TYPE_INT_RGB);
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                if (angle == 90) rotatedImage.setRGB(h - y - 1, x, bufferedImage.getRGB(x, y));
-                else if (angle == -90) rotatedImage.setRGB(y, w - x - 1, bufferedImage.getRGB(x, y));
-            }
+        applyOperation(new ImageOperation.Rotate(angle), () -> {
+            logger.info("Wykonano operację: Obrót obrazu");
+        }, ex -> {
+            showToast("Nie udało się obrócić obrazu", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd podczas obrotu obrazu", ex);
+        });
+    }
+
+    private void flipImage(boolean horizontal) {
+        if (sourceImage == null) {
+            showToast("Brak obrazu do odbicia", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Brak obrazu do odbicia");
+            return;
         }
-        Image fxRotated = SwingFXUtils.toFXImage(rotatedImage, null);
-        processedImageView.setImage(fxRotated);
-        operationApplied = true;
-        logger.info("Wykonano operację: Obrót obrazu");
+        applyOperation(new ImageOperation.Flip(horizontal), () -> {
+            logger.info("Wykonano operację: Odbicie obrazu");
+        }, ex -> {
+            showToast("Nie udało się odbić obrazu", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd podczas odbicia obrazu", ex);
+        });
+    }
+
+    // Dekodowanie i kopia podglądu w tle; wynik starszego wczytania (np. przy szybkim przechodzeniu po folderze)
+    // jest pomijany
+    private void openFile(Path file) {
+        if (!file.getFileName().toString().toLowerCase().endsWith(".jpg")) {
+            showToast("Niedozwolony format pliku", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Wybrano niedozwolony format pliku.");
+            return;
+        }
+
+        int generation = ++loadGeneration;
+        int proxyWidth = previewPixels();
+        progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        progressBar.setVisible(true);
+        // najpierw szybki podgląd z pomniejszonego dekodowania (dla dużych JPEG-ów w skali 1/8 z samych
+        // współczynników DC), pokazywany, zanim skończy się dekodowanie pełnej rozdzielczości
+        imageIo.loadReduced(file, proxyWidth, 1)
+                .thenCompose(reduced -> scheduler.submit(() -> PreviewProxy.create(reduced, proxyWidth, scheduler)))
+                .thenAccept(preview -> Platform.runLater(() -> {
+                    if (generation == loadGeneration && shownGeneration != generation) {
+                        showLoadingPreview(preview);
+                    }
+                }));
+        CompletableFuture<List<Path>> folder = imageIo.listFolder(file);
+        // bez skrótu pliku wyniki nie trafią do wspólnej pamięci, ale edycja działa normalnie
+        CompletableFuture<String> hash = imageIo.hash(file).exceptionally(ex -> null);
+        imageIo.load(file)
+                .thenCompose(image -> scheduler.submit(() -> new Loaded(image, PreviewProxy.create(image, proxyWidth, scheduler))))
+                .thenCombine(folder.exceptionally(ex -> List.of(file)), (loaded, files) -> loaded.withFolder(files))
+                .thenCombine(hash, Loaded::withHash)
+                .whenComplete((loaded, ex) -> Platform.runLater(() -> {
+                    if (generation != loadGeneration) {
+                        return;
+                    }
+                    shownGeneration = generation;
+                    if (currentJob == null) {
+                        progressBar.setVisible(false);
+                    }
+                    if (ex != null) {
+                        if (sourceImage == null) {
+                            // podgląd pliku, którego nie udało się wczytać w całości
+                            originalImageView.setImage(null);
+                        }
+                        showToast("Nie udało się załadować pliku", Alert.AlertType.ERROR);
+                        logger.log(Level.SEVERE, "Nie udało się załadować pliku: " + file, ex);
+                        return;
+                    }
+                    showLoaded(file, loaded);
+                }));
+    }
+
+    private record Loaded(BufferedImage image, BufferedImage proxy, List<Path> folder, String hash) {
+        Loaded(BufferedImage image, BufferedImage proxy) {
+            this(image, proxy, List.of(), null);
+        }
+
+        Loaded withFolder(List<Path> files) {
+            return new Loaded(image, proxy, files, hash);
+        }
+
+        Loaded withHash(String sourceHash) {
+            return new Loaded(image, proxy, folder, sourceHash);
+        }
+    }
+
+    // Obraz jeszcze się dekoduje - operacje i historia są zablokowane, żeby nie trafiły do poprzedniego obrazu
+    private void showLoadingPreview(BufferedImage preview) {
+        if (currentJob != null) currentJob.cancel();
+        sourceImage = null;
+        setImageControlsDisabled(true);
+        history.reset();
+        shownStep = 0;
+        updateHistoryButtons();
+        originalImageView.setImage(SwingFXUtils.toFXImage(preview, null));
+        originalImageView.setFitWidth(PREVIEW_WIDTH);
+        originalImageView.setPreserveRatio(true);
+        processedImageView.setImage(null);
+    }
+
+    private void setImageControlsDisabled(boolean disabled) {
+        executeButton.setDisable(disabled);
+        saveButton.setDisable(disabled);
+        scaleButton.setDisable(disabled);
+        rotateLeftButton.setDisable(disabled);
+        rotateRightButton.setDisable(disabled);
+        flipHorizontalButton.setDisable(disabled);
+        flipVerticalButton.setDisable(disabled);
+    }
+
+    private void showLoaded(Path file, Loaded loaded) {
+        // zadanie liczone dla poprzedniego obrazu nie może trafić do nowego
+        if (currentJob != null) currentJob.cancel();
+
+        originalImageView.setImage(SwingFXUtils.toFXImage(loaded.proxy(), null));
+        originalImageView.setFitWidth(PREVIEW_WIDTH);
+        originalImageView.setPreserveRatio(true);
+
+        processedImageView.setImage(null);
+        sourceImage = loaded.image();
+        sourceProxy = loaded.proxy();
+        currentProxy = sourceProxy;
+        fullSize = new Dimension(sourceImage.getWidth(), sourceImage.getHeight());
+        fullImage = sourceImage;
+        fullChain = OperationChain.empty();
+        appliedChain = OperationChain.empty();
+        operationApplied = false;
+        history.reset();
+        shownStep = 0;
+        // nowa pamięć podręczna - kompresje w tle dla poprzedniego obrazu trafią do starej
+        snapshots = new SnapshotCache(HISTORY_BUDGET, results, loaded.hash());
+        updateHistoryButtons();
+
+        originalWidth = sourceImage.getWidth();
+        originalHeight = sourceImage.getHeight();
+
+        loadedFile = file.toFile();
+        folderFiles = loaded.folder();
+        int index = folderFiles.indexOf(file);
+        previousFileButton.setDisable(index <= 0);
+        nextFileButton.setDisable(index < 0 || index >= folderFiles.size() - 1);
+        if (index >= 0) {
+            imageIo.prefetch(folderFiles.subList(index + 1, Math.min(folderFiles.size(), index + 1 + PREFETCH_FILES)));
+        }
+
+        setImageControlsDisabled(false);
+
+        showStatus("Pomyślnie załadowano plik");
+        logger.info("Wykonano operację: Załadowanie obrazu");
+    }
+
+    private void openNeighbour(int step) {
+        if (loadedFile == null) {
+            return;
+        }
+        int index = folderFiles.indexOf(loadedFile.toPath()) + step;
+        if (index >= 0 && index < folderFiles.size()) {
+            openFile(folderFiles.get(index));
+        }
+    }
+
+    private void showStatus(String message) {
+        statusLabel.setText(message);
     }
 
     private void showToast(String message, Alert.AlertType type) {
@@ -263,30 +488,75 @@ public class ImageAppController {
                 return;
             }
 
-            try {
-                WritableImage image = processedImageView.snapshot(null, null);
-                BufferedImage bImage = SwingFXUtils.fromFXImage(image, null);
-                ImageIO.write(bImage, "jpg", file);
-                showToast("Obraz zapisany pomyślnie", Alert.AlertType.INFORMATION);
-                logger.info("Wykonano operację: Zapisano obraz jako: " + filename);
-            } catch (IOException e) {
-                showToast("Nie udało się zapisać obrazu", Alert.AlertType.ERROR);
-                logger.log(Level.SEVERE, "Błąd podczas zapisywania obrazu: ", e);
+            Optional<Float> quality = askJpegQuality();
+            if (quality.isEmpty()) {
+                return;
             }
+            jpegQuality = quality.get();
+
+            // zapisywany jest wynik w pełnej rozdzielczości - jeśli jeszcze się liczy, zapis na niego poczeka;
+            // kodowanie i zapis na dysk idą już na puli wejścia-wyjścia
+            Path target = file.toPath();
+            float selectedQuality = jpegQuality;
+            String savedName = filename;
+            OperationChain chain = appliedChain;
+            BufferedImage source = sourceImage;
+            OperationChain knownChain = fullChain;
+            BufferedImage known = fullImage;
+            SnapshotCache cache = snapshots;
+            startJob(jobScheduler -> cache.render(chain, source, knownChain, known, jobScheduler), full -> {
+                commitFull(chain, full);
+                imageIo.save(full, target, "jpg", selectedQuality).whenComplete((done, ex) -> Platform.runLater(() -> {
+                    if (ex != null) {
+                        showToast("Nie udało się zapisać obrazu", Alert.AlertType.ERROR);
+                        logger.log(Level.SEVERE, "Błąd podczas zapisywania obrazu: ", ex);
+                        return;
+                    }
+                    showStatus("Obraz zapisany pomyślnie");
+                    logger.info("Wykonano operację: Zapisano obraz jako: " + savedName);
+                }));
+            }, ex -> {
+                showToast("Nie udało się zapisać obrazu", Alert.AlertType.ERROR);
+                logger.log(Level.SEVERE, "Błąd podczas zapisywania obrazu: ", ex);
+            });
         }
     }
 
 
+    // Jakość JPEG (10-100%); zapamiętywana do następnego zapisu
+    private Optional<Float> askJpegQuality() {
+        Dialog<Float> dialog = new Dialog<>();
+        dialog.setTitle("Jakość JPEG");
+
+        Setting quality = new Setting("Jakość (%)", new Slider(10, 100, Math.round(jpegQuality * 100)), false);
+        Label label = new Label(quality.text());
+        quality.slider().valueProperty().addListener((obs, oldValue, newValue) -> label.setText(quality.text()));
+
+        VBox content = new VBox(10, label, quality.slider());
+        content.setPadding(new Insets(20));
+        content.setPrefWidth(320);
+        dialog.getDialogPane().setContent(content);
+
+        ButtonType okButton = new ButtonType("Zapisz", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(okButton, ButtonType.CANCEL);
+        dialog.setResultConverter(button -> button == okButton ? (float) (quality.value() / 100) : null);
+        return dialog.showAndWait();
+    }
+
     private void showScaleDialog() {
-        Dialog<int[]> dialog = new Dialog<>();
+        Dialog<ImageOperation.Scale> dialog = new Dialog<>();
         dialog.setTitle("Skaluj obraz");
 
         Label widthLabel = new Label("Szerokość:");
         TextField widthField = new TextField();
         Label heightLabel = new Label("Wysokość:");
         TextField heightField = new TextField();
+        Label methodLabel = new Label("Metoda:");
+        ComboBox<String> methodBox = new ComboBox<>();
+        methodBox.getItems().addAll("Najbliższy sąsiad", "Dwuliniowa", "Dwusześcienna", "Lanczos");
+        methodBox.getSelectionModel().select(Resampler.DEFAULT_FILTER.ordinal());
 
-        VBox content = new VBox(10, widthLabel, widthField, heightLabel, heightField);
+        VBox content = new VBox(10, widthLabel, widthField, heightLabel, heightField, methodLabel, methodBox);
         content.setPadding(new Insets(20));
         dialog.getDialogPane().setContent(content);
 
@@ -298,14 +568,15 @@ public class ImageAppController {
                 try {
                     int w = Integer.parseInt(widthField.getText());
                     int h = Integer.parseInt(heightField.getText());
-                    if (w < 0 || h < 0) {
-                        showToast("Wymiary nie mogą być ujemne!", Alert.AlertType.ERROR);
+                    if (w <= 0 || h <= 0) {
+                        showToast("Wymiary muszą być dodatnie!", Alert.AlertType.ERROR);
                         return null;
                     } else if (w > 3000 || h > 3000) {
                         showToast("Wymiary nie mogą przekraczać 3000!", Alert.AlertType.ERROR);
                         return null;
                     }
-                    return new int[]{w, h};
+                    Resampler.Filter filter = Resampler.Filter.values()[methodBox.getSelectionModel().getSelectedIndex()];
+                    return new ImageOperation.Scale(w, h, filter);
                 } catch (NumberFormatException e) {
                     showToast("Wprowadź poprawne wymiary", Alert.AlertType.ERROR);
                     logger.log(Level.SEVERE, "Błąd podczas skalowania: " + e);
@@ -315,33 +586,59 @@ public class ImageAppController {
         });
 
         dialog.showAndWait().ifPresent(result -> {
-            Image source = processedImageView.getImage();
-            if (source == null) source = originalImageView.getImage();
-            if (source == null) {
+            if (sourceImage == null) {
                 showToast("Brak obrazu do skalowania", Alert.AlertType.ERROR);
                 logger.log(Level.SEVERE, "Brak obrazu do skalowania. ");
                 return;
             }
-            BufferedImage buffered = SwingFXUtils.fromFXImage(source, null);
-            java.awt.Image tmp = buffered.getScaledInstance(result[0], result[1], java.awt.Image.SCALE_SMOOTH);
-            BufferedImage scaled = new BufferedImage(result[0], result[1], BufferedImage.TYPE_INT_RGB);
-            scaled.getGraphics().drawImage(tmp, 0, 0, null);
-            processedImageView.setImage(SwingFXUtils.toFXImage(scaled, null));
-            operationApplied = true;
-            logger.info("Wykonano operację: Skalowanie");
+            applyOperation(result, () -> {
+                logger.info("Wykonano operację: Skalowanie");
+            }, ex -> {
+                showToast("Nie udało się przeskalować obrazu", Alert.AlertType.ERROR);
+                logger.log(Level.SEVERE, "Błąd podczas skalowania", ex);
+            });
         });
     }
 
     private void showThresholdDialog() {
+        if (sourceImage == null) {
+            showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
+            return;
+        }
+
         Dialog<Integer> dialog = new Dialog<>();
         dialog.setTitle("Progowanie");
 
-        Label label = new Label("Podaj próg (0-255):");
-        Spinner<Integer> spinner = new Spinner<>(0, 255, 128);
-        spinner.setEditable(true);
-
-        VBox content = new VBox(10, label, spinner);
+        // podgląd na żywo na kopii bieżącego wyniku: jasność i histogram liczone raz, przesunięcie suwaka
+        // to jedno przejście przez tablicę 256 kolorów
+        ThresholdPreview preview = ThresholdPreview.of(currentProxy, scheduler);
+        int[] pixels = new int[preview.width() * preview.height()];
+        WritableImage image = new WritableImage(preview.width(), preview.height());
+        Image previous = processedImageView.getImage();
+        double previousFit = processedImageView.getFitWidth();
+        processedImageView.setFitWidth(Math.min(PREVIEW_WIDTH, fullSize.width));
+        processedImageView.setPreserveRatio(true);
+
+        Label label = new Label();
+        Slider slider = new Slider(0, 255, 128);
+        slider.setBlockIncrement(1);
+        slider.setMajorTickUnit(64);
+        slider.setShowTickMarks(true);
+        IntConsumer update = level -> {
+            label.setText("Próg: " + level);
+            preview.render(level, pixels);
+            image.getPixelWriter().setPixels(0, 0, preview.width(), preview.height(),
+                    PixelFormat.getIntArgbInstance(), pixels, 0, preview.width());
+            processedImageView.setImage(image);
+        };
+        slider.valueProperty().addListener((obs, oldValue, newValue) -> update.accept(newValue.intValue()));
+        update.accept(128);
+        Button otsuButton = new Button("Automatycznie (Otsu)");
+        otsuButton.setOnAction(e -> slider.setValue(preview.otsu()));
+
+        VBox content = new VBox(10, label, slider, otsuButton);
         content.setPadding(new Insets(20));
+        content.setPrefWidth(320);
         dialog.getDialogPane().setContent(content);
 
         ButtonType okButton = new ButtonType("Wykonaj progowanie", ButtonBar.ButtonData.OK_DONE);
@@ -349,182 +646,392 @@ public class ImageAppController {
 
         dialog.setResultConverter(button -> {
             if (button == okButton) {
-                return spinner.getValue();
+                return (int) slider.getValue();
             }
             return null;
         });
-        dialog.showAndWait().ifPresent(threshold -> applyThreshold(threshold));
+        Optional<Integer> result = dialog.showAndWait();
+        // do czasu zakończenia operacji widoczny jest wynik sprzed progowania
+        processedImageView.setImage(previous);
+        processedImageView.setFitWidth(previousFit);
+        result.ifPresent(threshold -> applyThreshold(threshold));
     }
 
     private void applyThreshold(int threshold) {
-        Image source = originalImageView.getImage();
-        if (source == null) {
+        if (sourceImage == null) {
             showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
             return;
         }
 
-        BufferedImage buffered = SwingFXUtils.fromFXImage(source, null);
-        int width = buffered.getWidth();
-        int height = buffered.getHeight();
-        int numThreads = 4;
-        int chunkHeight = height / numThreads;
-
-        Runnable[] tasks = new Runnable[numThreads];
-        for (int i = 0; i < numThreads; i++) {
-            final int startY = i * chunkHeight;
-            final int endY = (i == numThreads - 1) ? height : (i + 1) * chunkHeight;
-
-            tasks[i] = () -> {
-                for (int y = startY; y < endY; y++) {
-                    for (int x = 0; x < width; x++) {
-                        int rgba = buffered.getRGB(x, y);
-                        int r = (rgba >> 16) & 0xff;
-                        int g = (rgba >> 8) & 0xff;
-                        int b = rgba & 0xff;
-                        int gray = (r + g + b) / 3;
-                        int binary = gray < threshold ? 0 : 255;
-                        int newPixel = (0xff << 24) | (binary << 16) | (binary << 8) | binary;
-                        buffered.setRGB(x, y, newPixel);
-                    }
-                }
-            };
-        }
-
-        executor.submit(() -> {
-            try {
-                for (Runnable task : tasks) executor.submit(task);
-                executor.submit(() -> javafx.application.Platform.runLater(() -> {
-                    processedImageView.setImage(SwingFXUtils.toFXImage(buffered, null));
-                    operationApplied = true;
-                    showToast("Progowanie zostało przeprowadzone pomyślnie!", Alert.AlertType.INFORMATION);
-                    logger.info("Wykonano operację: Progowanie");
-                }));
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Błąd podczas progowania: " + e);
-                javafx.application.Platform.runLater(() -> showToast("Nie udało się wykonać progowania.", Alert.AlertType.ERROR));
-            }
+        // progowanie, jak każda operacja, działa na bieżącym wyniku
+        applyOperation(new ImageOperation.Threshold(threshold), () -> {
+            showStatus("Progowanie zostało przeprowadzone pomyślnie!");
+            logger.info("Wykonano operację: Progowanie");
+        }, ex -> {
+            logger.log(Level.SEVERE, "Błąd podczas progowania: " + ex);
+            showToast("Nie udało się wykonać progowania.", Alert.AlertType.ERROR);
         });
     }
 
 
     private void applyNegative() {
-        Image source = originalImageView.getImage();
-        if (source == null) {
+        if (sourceImage == null) {
             showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
             logger.warning("Próba zastosowania negatywu bez załadowanego obrazu.");
             return;
         }
 
-        BufferedImage bufferedImage = SwingFXUtils.fromFXImage(source, null);
-        int height = bufferedImage.getHeight();
-        int width = bufferedImage.getWidth();
-        int numThreads = 4;
-        int chunkHeight = height / numThreads;
-
-        Runnable[] tasks = new Runnable[numThreads];
-
-        for (int i = 0; i < numThreads; i++) {
-            final int startY = i * chunkHeight;
-            final int endY = (i == numThreads - 1) ? height : (i + 1) * chunkHeight;
-            tasks[i] = () -> {
-                for (int y = startY; y < endY; y++) {
-                    for (int x = 0; x < width; x++) {
-                        int rgba = bufferedImage.getRGB(x, y);
-                        int a = (rgba >> 24) & 0xff;
-                        int r = 255 - ((rgba >> 16) & 0xff);
-                        int g = 255 - ((rgba >> 8) & 0xff);
-                        int b = 255 - (rgba & 0xff);
-                        int neg = (a << 24) | (r << 16) | (g << 8) | b;
-                        bufferedImage.setRGB(x, y, neg);
-                    }
-                }
-            };
+        applyOperation(new ImageOperation.Negative(), () -> {
+            showStatus("Negatyw został wygenerowany pomyślnie!");
+            logger.info("Wykonano operację: Negatyw");
+        }, ex -> {
+            logger.log(Level.SEVERE, "Błąd przy operacji negatywu", ex);
+            showToast("Nie udało się wykonać negatywu.", Alert.AlertType.ERROR);
+        });
+    }
+
+
+    private void applyEdgeDetection(Convolution.Gradient operator) {
+        if (sourceImage == null) {
+            showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
+            return;
         }
 
-        executor.submit(() -> {
-            try {
-                for (Runnable task : tasks) executor.submit(task);
-                executor.submit(() -> javafx.application.Platform.runLater(() -> {
-                    processedImageView.setImage(SwingFXUtils.toFXImage(bufferedImage, null));
-                    operationApplied = true;
-                    showToast("Negatyw został wygenerowany pomyślnie!", Alert.AlertType.INFORMATION);
-                    logger.info("Wykonano operację: Negatyw");
-                }));
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Błąd przy operacji negatywu", e);
-                javafx.application.Platform.runLater(() -> showToast("Nie udało się wykonać negatywu.", Alert.AlertType.ERROR));
-            }
+        applyOperation(new ImageOperation.EdgeDetection(operator), () -> {
+            showStatus("Konturowanie zostało zakończone pomyślnie!");
+            logger.info("Wykonano operację: Konturowanie");
+        }, ex -> {
+            showToast("Błąd podczas konturowania.", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd przy operacji konturowania", ex);
         });
     }
 
+    private void showBlurDialog() {
+        if (sourceImage == null) {
+            showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
+            return;
+        }
 
-    private void applyEdgeDetection() {
-        Image source = originalImageView.getImage();
-        if (source == null) {
+        Dialog<Double> dialog = new Dialog<>();
+        dialog.setTitle("Rozmycie Gaussa");
+
+        Setting sigma = new Setting("Promień (sigma, piksele)", new Slider(0.5, 20, 2), true);
+        Label label = new Label(sigma.text());
+        sigma.slider().valueProperty().addListener((obs, oldValue, newValue) -> label.setText(sigma.text()));
+
+        VBox content = new VBox(10, label, sigma.slider());
+        content.setPadding(new Insets(20));
+        content.setPrefWidth(320);
+        dialog.getDialogPane().setContent(content);
+
+        ButtonType okButton = new ButtonType("Rozmyj", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(okButton, ButtonType.CANCEL);
+        dialog.setResultConverter(button -> button == okButton ? sigma.value() : null);
+
+        dialog.showAndWait().ifPresent(value -> applyOperation(new ImageOperation.GaussianBlur(value), () -> {
+            showStatus("Rozmycie zostało zastosowane pomyślnie!");
+            logger.info("Wykonano operację: Rozmycie (sigma " + value + ")");
+        }, ex -> {
+            showToast("Nie udało się rozmyć obrazu.", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd przy operacji rozmycia", ex);
+        }));
+    }
+
+    private void applySharpen() {
+        if (sourceImage == null) {
             showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
             return;
         }
 
-        try {
-            BufferedImage src = SwingFXUtils.fromFXImage(source, null);
-            int width = src.getWidth();
-            int height = src.getHeight();
-            BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-            int numThreads = 4;
-            Thread[] threads = new Thread[numThreads];
-            int chunkHeight = height / numThreads;
-
-            for (int i = 0; i < numThreads; i++) {
-                final int startY = Math.max(1, i * chunkHeight);
-                final int endY = (i == numThreads - 1) ? height - 1 : Math.min(height - 1, (i + 1) * chunkHeight);
-
-                threads[i] = new Thread(() -> {
-                    for (int y = startY; y < endY; y++) {
-                        for (int x = 1; x < width - 1; x++) {
-                            int rgb = src.getRGB(x, y);
-                            int r = (rgb >> 16) & 0xff;
-                            int g = (rgb >> 8) & 0xff;
-                            int b = rgb & 0xff;
-                            int gray = (r + g + b) / 3;
-
-                            int rgbRight = src.getRGB(x + 1, y);
-                            int rR = (rgbRight >> 16) & 0xff;
-                            int gR = (rgbRight >> 8) & 0xff;
-                            int bR = rgbRight & 0xff;
-                            int grayRight = (rR + gR + bR) / 3;
-
-                            int rgbDown = src.getRGB(x, y + 1);
-                            int rD = (rgbDown >> 16) & 0xff;
-                            int gD = (rgbDown >> 8) & 0xff;
-                            int bD = rgbDown & 0xff;
-                            int grayDown = (rD + gD + bD) / 3;
-
-                            int dx = gray - grayRight;
-                            int dy = gray - grayDown;
-                            int magnitude = Math.min(255, Math.abs(dx) + Math.abs(dy));
-
-                            int edgeColor = (0xff << 24) | (magnitude << 16) | (magnitude << 8) | magnitude;
-                            result.setRGB(x, y, edgeColor);
-                        }
-                    }
-                });
-                threads[i].start();
+        applyOperation(new ImageOperation.Sharpen(), () -> {
+            showStatus("Wyostrzanie zostało zakończone pomyślnie!");
+            logger.info("Wykonano operację: Wyostrzanie");
+        }, ex -> {
+            showToast("Nie udało się wyostrzyć obrazu.", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd przy operacji wyostrzania", ex);
+        });
+    }
+
+    private void applyGrayscale() {
+        if (sourceImage == null) {
+            showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
+            return;
+        }
+
+        applyOperation(new ImageOperation.Grayscale(), () -> {
+            showStatus("Skala szarości została zastosowana pomyślnie!");
+            logger.info("Wykonano operację: Skala szarości");
+        }, ex -> {
+            showToast("Nie udało się zastosować skali szarości.", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd przy operacji skali szarości", ex);
+        });
+    }
+
+    private void showBrightnessContrastDialog() {
+        Setting brightness = new Setting("Jasność", new Slider(-100, 100, 0), false);
+        Setting contrast = new Setting("Kontrast", new Slider(0, 3, 1), true);
+        showAdjustmentDialog("Jasność i kontrast", List.of(brightness, contrast),
+                () -> new ImageOperation.BrightnessContrast((int) brightness.value(), contrast.value()));
+    }
+
+    private void showGammaDialog() {
+        Setting gamma = new Setting("Gamma", new Slider(0.1, 5, 1), true);
+        showAdjustmentDialog("Gamma", List.of(gamma), () -> new ImageOperation.Gamma(gamma.value()));
+    }
+
+    private void showLevelsDialog() {
+        Setting black = new Setting("Czerń", new Slider(0, 254, 0), false);
+        Setting white = new Setting("Biel", new Slider(1, 255, 255), false);
+        Setting gamma = new Setting("Gamma", new Slider(0.1, 5, 1), true);
+        showAdjustmentDialog("Poziomy", List.of(black, white, gamma),
+                () -> new ImageOperation.Levels((int) black.value(), (int) white.value(), gamma.value()));
+    }
+
+    // Suwak korekcji; decimal - wartość z dokładnością do 0.01, w przeciwnym razie całkowita
+    private record Setting(String name, Slider slider, boolean decimal) {
+        double value() {
+            return decimal ? Math.round(slider.getValue() * 100) / 100.0 : Math.round(slider.getValue());
+        }
+
+        String text() {
+            return name + ": " + (decimal ? String.format("%.2f", value()) : String.valueOf((int) value()));
+        }
+    }
+
+    // Korekcja punktowa z podglądem na żywo: przesunięcie suwaka to nowa tablica przekodowań (PointLut)
+    // i jedno przejście po kopii bieżącego wyniku w rozmiarze widoku
+    private void showAdjustmentDialog(String title, List<Setting> settings, Supplier<ImageOperation.PointOperation> operation) {
+        if (sourceImage == null) {
+            showToast("Brak obrazu do przetworzenia", Alert.AlertType.ERROR);
+            return;
+        }
+
+        Dialog<ImageOperation.PointOperation> dialog = new Dialog<>();
+        dialog.setTitle(title);
+
+        BufferedImage base = IntImages.toIntImage(currentProxy);
+        int[] src = IntImages.pixels(base);
+        int[] pixels = new int[src.length];
+        WritableImage image = new WritableImage(base.getWidth(), base.getHeight());
+        Image previous = processedImageView.getImage();
+        double previousFit = processedImageView.getFitWidth();
+        processedImageView.setFitWidth(Math.min(PREVIEW_WIDTH, fullSize.width));
+        processedImageView.setPreserveRatio(true);
+
+        Runnable update = () -> {
+            PointLut lut;
+            try {
+                lut = operation.get().lut();
+            } catch (IllegalArgumentException e) {
+                // np. czerń ustawiona powyżej bieli - podgląd zostaje bez zmian
+                return;
             }
+            lut.apply(src, pixels, 0, src.length);
+            image.getPixelWriter().setPixels(0, 0, base.getWidth(), base.getHeight(),
+                    PixelFormat.getIntArgbInstance(), pixels, 0, base.getWidth());
+            processedImageView.setImage(image);
+        };
+
+        VBox content = new VBox(10);
+        for (Setting setting : settings) {
+            Label label = new Label(setting.text());
+            setting.slider().valueProperty().addListener((obs, oldValue, newValue) -> {
+                label.setText(setting.text());
+                update.run();
+            });
+            content.getChildren().addAll(label, setting.slider());
+        }
+        update.run();
+        content.setPadding(new Insets(20));
+        content.setPrefWidth(320);
+        dialog.getDialogPane().setContent(content);
 
-            for (Thread t : threads) {
-                t.join();
+        ButtonType okButton = new ButtonType("Zastosuj", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(okButton, ButtonType.CANCEL);
+
+        dialog.setResultConverter(button -> {
+            if (button == okButton) {
+                try {
+                    return operation.get();
+                } catch (IllegalArgumentException e) {
+                    showToast(e.getMessage(), Alert.AlertType.ERROR);
+                }
             }
+            return null;
+        });
+        Optional<ImageOperation.PointOperation> result = dialog.showAndWait();
+        processedImageView.setImage(previous);
+        processedImageView.setFitWidth(previousFit);
+        result.ifPresent(adjustment -> applyOperation(adjustment, () -> {
+            showStatus("Korekcja została zastosowana pomyślnie!");
+            logger.info("Wykonano operację: " + title + " (" + adjustment.spec() + ")");
+        }, ex -> {
+            showToast("Nie udało się zastosować korekcji.", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd przy operacji: " + title, ex);
+        }));
+    }
 
-            processedImageView.setImage(SwingFXUtils.toFXImage(result, null));
-            operationApplied = true;
-            showToast("Konturowanie zostało zakończone pomyślnie!", Alert.AlertType.INFORMATION);
-            logger.info("Wykonano operację: Konturowanie");
-        } catch (Exception e) {
-            showToast("Błąd podczas konturowania.", Alert.AlertType.ERROR);
-            logger.log(Level.SEVERE, "Błąd przy operacji konturowania", e);
+    // Każda operacja działa na bieżącym wyniku i dodaje krok do historii. Najpierw liczona jest na kopii
+    // w rozmiarze widoku (natychmiastowy podgląd), potem w tle w pełnej rozdzielczości.
+    private void applyOperation(ImageOperation operation, Runnable onSuccess, Consumer<Throwable> onError) {
+        OperationChain chain = appliedChain.then(operation);
+        BufferedImage base = currentProxy;
+        int fullWidth = fullSize.width;
+        Dimension size = PreviewProxy.resultSize(operation, fullSize);
+        startJob(jobScheduler -> PreviewProxy.apply(operation, base, fullWidth, jobScheduler), preview -> {
+            // nowy krok idzie za pokazanym, nawet jeśli przerwane przywracanie zostawiło kursor gdzie indziej
+            history.moveTo(shownStep);
+            history.push(chain);
+            showPreview(chain, preview, size);
+            refine(chain);
+            onSuccess.run();
+        }, onError);
+    }
+
+    // Wynik w pełnej rozdzielczości dla wyświetlanego łańcucha - od ostatniego pełnego wyniku albo z historii
+    private void refine(OperationChain chain) {
+        BufferedImage source = sourceImage;
+        OperationChain knownChain = fullChain;
+        BufferedImage known = fullImage;
+        SnapshotCache cache = snapshots;
+        int width = previewPixels();
+        startJob(jobScheduler -> {
+            BufferedImage full = cache.render(chain, source, knownChain, known, jobScheduler);
+            return new Rendered(full, PreviewProxy.create(full, width, jobScheduler));
+        }, rendered -> {
+            if (!appliedChain.equals(chain)) return;
+            commitFull(chain, rendered.full());
+            // dokładniejszy podgląd: pomniejszony wynik pełnej rozdzielczości zamiast operacji na kopii
+            currentProxy = rendered.proxy();
+            processedImageView.setImage(SwingFXUtils.toFXImage(rendered.proxy(), null));
+        }, ex -> {
+            showToast("Nie udało się przetworzyć obrazu w pełnej rozdzielczości", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd podczas przetwarzania w pełnej rozdzielczości", ex);
+        });
+    }
+
+    private record Rendered(BufferedImage full, BufferedImage proxy) {
+    }
+
+    // Skróty klawiszowe działają także przy zablokowanych przyciskach - bez obrazu (wczytywanie, nieudane
+    // wczytanie) nie ma czego przywracać
+    private void undo() {
+        if (sourceImage != null && history.canUndo()) {
+            restore(history.position() - 1);
         }
     }
+
+    private void redo() {
+        if (sourceImage != null && history.canRedo()) {
+            restore(history.position() + 1);
+        }
+    }
+
+    // Przejście do kroku historii: podgląd przeliczony na kopii źródła, a pełna rozdzielczość
+    // z pamięci podręcznej albo odtworzona od najbliższego zapisanego kroku. Pozycja w historii zmienia się
+    // od razu (kilka szybkich cofnięć cofa o tyle kroków), a zadanie tylko rysuje - wynik dla kroku, który
+    // przestał być bieżący, jest pomijany. Jeśli podgląd nie powstanie (anulowanie, błąd), kursor wraca do
+    // pokazanego kroku, a nowa operacja zawsze dołącza do tego, co widać.
+    private void restore(int index) {
+        history.moveTo(index);
+        updateHistoryButtons();
+        OperationChain chain = history.step(index);
+        Dimension sourceSize = new Dimension(sourceImage.getWidth(), sourceImage.getHeight());
+        Dimension size = PreviewProxy.resultSize(chain, sourceSize);
+        if (chain.isEmpty()) {
+            // operacja liczona dla poprzedniego kroku nie może już trafić do historii
+            if (currentJob != null) currentJob.cancel();
+            showPreview(chain, sourceProxy, size);
+            commitFull(chain, sourceImage);
+            return;
+        }
+        BufferedImage proxy = sourceProxy;
+        startJob(jobScheduler -> PreviewProxy.render(chain, proxy, sourceSize, jobScheduler), preview -> {
+            if (history.position() != index) return;
+            showPreview(chain, preview, size);
+            refine(chain);
+        }, ex -> {
+            if (history.position() == index) rewindToShown();
+            showToast("Nie udało się przywrócić kroku historii", Alert.AlertType.ERROR);
+            logger.log(Level.SEVERE, "Błąd podczas przywracania historii", ex);
+        });
+    }
+
+    // Kursor historii wraca do pokazanego kroku, gdy podgląd przywracanego kroku nie powstał
+    private void rewindToShown() {
+        if (history.position() != shownStep) {
+            history.moveTo(shownStep);
+            updateHistoryButtons();
+        }
+    }
+
+    private void showPreview(OperationChain chain, BufferedImage preview, Dimension size) {
+        shownStep = history.position();
+        appliedChain = chain;
+        currentProxy = preview;
+        fullSize = size;
+        // wynik wyświetlany jak oryginał - w szerokości widoku, mniejsze obrazy bez powiększania
+        processedImageView.setFitWidth(Math.min(PREVIEW_WIDTH, size.width));
+        processedImageView.setPreserveRatio(true);
+        processedImageView.setImage(chain.isEmpty() ? null : SwingFXUtils.toFXImage(preview, null));
+        operationApplied = !chain.isEmpty();
+        updateHistoryButtons();
+    }
+
+    private void commitFull(OperationChain chain, BufferedImage full) {
+        fullChain = chain;
+        fullImage = full;
+        SnapshotCache cache = snapshots;
+        if (!chain.isEmpty() && !cache.contains(chain)) {
+            // kompresja w tle - cofnięcie do tego kroku nie będzie wymagało ponownego liczenia
+            scheduler.submit(() -> {
+                cache.put(chain, full, scheduler);
+                return null;
+            });
+        }
+    }
+
+    // Szerokość kopii podglądu w pikselach ekranu (na ekranach HiDPI większa niż szerokość widoku)
+    private static int previewPixels() {
+        return (int) Math.ceil(PREVIEW_WIDTH * Screen.getPrimary().getOutputScaleX());
+    }
+
+    private void updateHistoryButtons() {
+        undoButton.setDisable(!history.canUndo());
+        redoButton.setDisable(!history.canRedo());
+    }
+
+    // Uruchamia operację w tle; ponowne uruchomienie anuluje poprzednie zadanie, żeby nie liczyć niepotrzebnie
+    private <T> void startJob(Function<TileScheduler, T> work, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        if (currentJob != null) currentJob.cancel();
+
+        int generation = ++jobGeneration;
+        progressBar.setProgress(0);
+        progressBar.setVisible(true);
+        cancelButton.setDisable(false);
+
+        FilterJob<T> job = FilterJob.submit(scheduler, progress -> Platform.runLater(() -> {
+            if (generation == jobGeneration) progressBar.setProgress(progress);
+        }), work);
+        currentJob = job;
+
+        job.result().whenComplete((result, ex) -> Platform.runLater(() -> {
+            if (currentJob == job) {
+                currentJob = null;
+                progressBar.setVisible(false);
+                cancelButton.setDisable(true);
+            }
+            if (job.isCancelled() || (ex != null && FilterJob.isCancellation(ex))) {
+                // anulowane bez następnego zadania (przycisk Anuluj) - także przywracanie kroku historii
+                if (currentJob == null) rewindToShown();
+                logger.info("Anulowano operację");
+            } else if (ex != null) {
+                onError.accept(ex);
+            } else {
+                onSuccess.accept(result);
+            }
+        }));
+    }
     private void setupLogger () {
         try {
             File logFile = new File("logi_aplikacji.log");
@@ -0,0 +1,170 @@
+package org.java.lab6again;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+
+// Dekodowanie i kodowanie plików przez ImageIO, z zamykaniem strumieni i jakością JPEG ustawianą przez ImageWriteParam.
+// Koder zapisuje wynik strumieniowo do pliku (bez składania całego pliku w pamięci). Do podglądów i miniatur
+// obraz może być pomniejszany już przy dekodowaniu (co n-ty piksel), zamiast dekodowania całości i skalowania.
+public final class ImageCodecs {
+
+    // taka sama jak domyślna jakość kodera JPEG z ImageIO
+    public static final float DEFAULT_JPEG_QUALITY = 0.75f;
+
+    private ImageCodecs() {
+    }
+
+    public static BufferedImage read(Path file) throws IOException {
+        Metrics.Sample sample = Metrics.global().start("decode");
+        BufferedImage image = withReader(file, reader -> reader.read(0, reader.getDefaultReadParam()));
+        sample.stop(image.getWidth(), image.getHeight());
+        return image;
+    }
+
+    // Obraz z bajtów pliku, np. z treści żądania HTTP
+    public static BufferedImage read(byte[] data) throws IOException {
+        Metrics.Sample sample = Metrics.global().start("decode");
+        BufferedImage image = withReader(new ByteArrayInputStream(data), "dane w pamięci",
+                reader -> reader.read(0, reader.getDefaultReadParam()));
+        sample.stop(image.getWidth(), image.getHeight());
+        return image;
+    }
+
+    // Obraz (albo jego fragment region, null - cały) pomniejszony przy dekodowaniu, tak by miał co najmniej
+    // minWidth x minHeight pikseli. Cały JPEG zmniejszany co najmniej 8 razy dekodowany jest w skali 1/8 z samych
+    // współczynników DC (JpegDcDecoder). W pozostałych przypadkach z pliku brany jest co n-ty piksel
+    // (ImageReadParam) - dekoder z ImageIO i tak przechodzi całe DCT, więc to oszczędza pamięć, a nie czas.
+    public static BufferedImage read(Path file, Rectangle region, int minWidth, int minHeight) throws IOException {
+        if (minWidth <= 0 || minHeight <= 0) {
+            throw new IllegalArgumentException("Wymiary muszą być dodatnie: " + minWidth + "x" + minHeight);
+        }
+        Metrics.Sample sample = Metrics.global().start("decode-reduced");
+        BufferedImage image = withReader(file, reader -> {
+            Rectangle bounds = new Rectangle(reader.getWidth(0), reader.getHeight(0));
+            Rectangle area = region == null ? bounds : region.intersection(bounds);
+            if (area.isEmpty()) {
+                throw new IllegalArgumentException("Fragment poza obrazem: " + region);
+            }
+            int step = Math.max(1, Math.min(area.width / minWidth, area.height / minHeight));
+            if (region == null && step >= 8 && reader.getFormatName().equalsIgnoreCase("jpeg")) {
+                BufferedImage reduced = JpegDcDecoder.decode(Files.readAllBytes(file));
+                if (reduced != null) {
+                    return reduced;
+                }
+            }
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (region != null) {
+                param.setSourceRegion(area);
+            }
+            if (step > 1) {
+                param.setSourceSubsampling(step, step, 0, 0);
+            }
+            return reader.read(0, param);
+        });
+        sample.stop(image.getWidth(), image.getHeight());
+        return image;
+    }
+
+    // Wymiary obrazu z nagłówka pliku, bez dekodowania pikseli
+    public static Dimension size(Path file) throws IOException {
+        return withReader(file, reader -> new Dimension(reader.getWidth(0), reader.getHeight(0)));
+    }
+
+    private interface ReaderTask<T> {
+        T run(ImageReader reader) throws IOException;
+    }
+
+    private static <T> T withReader(Path file, ReaderTask<T> task) throws IOException {
+        return withReader(file.toFile(), file.toString(), task);
+    }
+
+    // input to plik albo strumień - to, co przyjmuje ImageIO.createImageInputStream
+    private static <T> T withReader(Object input, String name, ReaderTask<T> task) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(input)) {
+            if (in == null) {
+                throw new IOException("Nie można otworzyć pliku: " + name);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Nieobsługiwany format pliku: " + name);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return task.run(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public static boolean canWrite(String format) {
+        return ImageIO.getImageWritersByFormatName(format.toLowerCase(Locale.ROOT)).hasNext();
+    }
+
+    public static void write(BufferedImage image, Path target, String format) throws IOException {
+        write(image, target, format, DEFAULT_JPEG_QUALITY);
+    }
+
+    // quality (0-1) dotyczy tylko JPEG; kanał alfa jest dla JPEG pomijany
+    public static void write(BufferedImage image, Path target, String format, float quality) throws IOException {
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(target))) {
+            write(image, file, format, quality);
+        }
+    }
+
+    // Zapis do strumienia, który pozostaje otwarty
+    public static void write(BufferedImage image, OutputStream target, String format, float quality) throws IOException {
+        if (!(quality >= 0 && quality <= 1)) {
+            throw new IllegalArgumentException("Jakość JPEG musi być z zakresu 0-1: " + quality);
+        }
+        String name = format.toLowerCase(Locale.ROOT);
+        boolean jpeg = name.equals("jpg") || name.equals("jpeg");
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(name);
+        if (!writers.hasNext()) {
+            throw new IOException("Brak kodera dla formatu " + format);
+        }
+        BufferedImage output = jpeg && image.getColorModel().hasAlpha() ? withoutAlpha(image) : image;
+        ImageWriter writer = writers.next();
+        Metrics.Sample sample = Metrics.global().start("encode");
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(target)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (jpeg) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(output, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        sample.stop(image.getWidth(), image.getHeight());
+    }
+
+    private static BufferedImage withoutAlpha(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+}
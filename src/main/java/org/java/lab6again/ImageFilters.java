@@ -0,0 +1,134 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+
+// Operacje na pikselach wydzielone z kontrolera, tak aby dało się ich używać bez JavaFX
+public final class ImageFilters {
+
+    // kafelki transpozycji: 256 x 256 pikseli czytanych wierszami i zapisywanych kolumnami
+    private static final int TRANSPOSE_TILE = 256;
+    // brzegi filtrów sąsiedztwa: powielenie skrajnych pikseli
+    static final Convolution.Border BORDER = Convolution.Border.CLAMP;
+
+    private ImageFilters() {
+    }
+
+    // Negatyw wykonywany w miejscu (dla obrazów typu INT) na wątkach wspólnego harmonogramu
+    public static BufferedImage negative(BufferedImage image) {
+        return negative(image, TileScheduler.shared());
+    }
+
+    public static BufferedImage negative(BufferedImage image, TileScheduler scheduler) {
+        BufferedImage result = IntImages.toIntImage(image);
+        int[] pixels = IntImages.pixels(result);
+        scheduler.forEachSpan(pixels.length, (from, to) -> PixelKernels.negative(pixels, pixels, from, to));
+        return result;
+    }
+
+    // Progowanie wykonywane w miejscu (dla obrazów typu INT)
+    public static BufferedImage threshold(BufferedImage image, int threshold) {
+        return threshold(image, threshold, TileScheduler.shared());
+    }
+
+    public static BufferedImage threshold(BufferedImage image, int threshold, TileScheduler scheduler) {
+        BufferedImage result = IntImages.toIntImage(image);
+        int[] pixels = IntImages.pixels(result);
+        scheduler.forEachSpan(pixels.length, (from, to) -> PixelKernels.threshold(pixels, pixels, from, to, threshold));
+        return result;
+    }
+
+    // Skala szarości wykonywana w miejscu (dla obrazów typu INT)
+    public static BufferedImage grayscale(BufferedImage image) {
+        return grayscale(image, TileScheduler.shared());
+    }
+
+    public static BufferedImage grayscale(BufferedImage image, TileScheduler scheduler) {
+        BufferedImage result = IntImages.toIntImage(image);
+        int[] pixels = IntImages.pixels(result);
+        scheduler.forEachSpan(pixels.length, (from, to) -> PixelKernels.grayscale(pixels, pixels, from, to));
+        return result;
+    }
+
+    // Tablica przekodowań (jedna lub złożona z kilku operacji punktowych) wykonywana w miejscu
+    public static BufferedImage lookup(BufferedImage image, PointLut lut, TileScheduler scheduler) {
+        BufferedImage result = IntImages.toIntImage(image);
+        int[] pixels = IntImages.pixels(result);
+        scheduler.forEachSpan(pixels.length, (from, to) -> lut.apply(pixels, pixels, from, to));
+        return result;
+    }
+
+    // Konturowanie do nowego obrazu - moduł gradientu jasności (Sobel), brzegi liczone z powielonych skrajnych pikseli
+    public static BufferedImage edgeDetection(BufferedImage src) {
+        return edgeDetection(src, Convolution.Gradient.SOBEL, TileScheduler.shared());
+    }
+
+    public static BufferedImage edgeDetection(BufferedImage src, Convolution.Gradient operator, TileScheduler scheduler) {
+        return Convolution.gradient(src, operator, BORDER, scheduler);
+    }
+
+    // Splot do nowego obrazu (rozmycie, wyostrzanie)
+    public static BufferedImage convolve(BufferedImage src, Convolution.Kernel kernel, TileScheduler scheduler) {
+        return Convolution.filter(src, kernel, BORDER, scheduler);
+    }
+
+    // Obrót o wielokrotność 90 stopni (dodatni kąt - zgodnie z ruchem wskazówek zegara), z zachowaniem kanału alfa
+    public static BufferedImage rotate(BufferedImage src, int angle) {
+        return rotate(src, angle, TileScheduler.shared());
+    }
+
+    public static BufferedImage rotate(BufferedImage src, int angle, TileScheduler scheduler) {
+        return orient(src, Orientation.rotation(angle), scheduler, false);
+    }
+
+    public static BufferedImage flip(BufferedImage src, boolean horizontal, TileScheduler scheduler) {
+        return orient(src, Orientation.flip(horizontal), scheduler, false);
+    }
+
+    // Obrót i/lub odbicie w jednym przebiegu. Obroty o 90 stopni idą blokami przez transpozycję do nowego obrazu;
+    // 180 stopni i odbicia nie zmieniają wymiarów, więc przy inPlace (albo po konwersji typu) wykonywane są w miejscu.
+    public static BufferedImage orient(BufferedImage src, Orientation orientation, TileScheduler scheduler, boolean inPlace) {
+        if (orientation.isIdentity()) {
+            return src;
+        }
+        BufferedImage source = IntImages.toIntImage(src);
+        int w = source.getWidth();
+        int h = source.getHeight();
+        boolean alpha = IntImages.hasAlpha(source);
+        int[] in = IntImages.pixels(source);
+        if (orientation.swapsDimensions()) {
+            BufferedImage rotated = IntImages.create(h, w, alpha);
+            int[] out = IntImages.pixels(rotated);
+            boolean reverseRows = orientation.quarterTurns() == 1;
+            boolean reverseColumns = reverseRows == orientation.mirrored();
+            scheduler.forEachTile(w, h, TRANSPOSE_TILE, TRANSPOSE_TILE, 0, tile -> PixelKernels.transpose(
+                    in, out, w, h, reverseRows, reverseColumns, tile.x0(), tile.y0(), tile.x1(), tile.y1()));
+            return rotated;
+        }
+
+        BufferedImage result = inPlace || source != src ? source : IntImages.create(w, h, alpha);
+        int[] out = IntImages.pixels(result);
+        boolean same = in == out;
+        int rows = Math.max(1, TileScheduler.TILE_PIXELS / w);
+        if (!orientation.mirrored()) {
+            int length = w * h;
+            scheduler.forEachSpan(same ? length / 2 : length,
+                    (from, to) -> PixelKernels.reverse(in, out, length, from, to));
+        } else if (orientation.quarterTurns() == 0) {
+            scheduler.forEachTile(w, h, w, rows, 0, tile -> PixelKernels.mirrorRows(in, out, w, tile.y0(), tile.y1()));
+        } else {
+            scheduler.forEachTile(w, same ? h / 2 : h, w, rows, 0,
+                    tile -> PixelKernels.flipRows(in, out, w, h, tile.y0(), tile.y1()));
+        }
+        return result;
+    }
+
+    // Skalowanie filtrem rozdzielnym (Resampler), z zachowaniem kanału alfa
+    public static BufferedImage scale(BufferedImage src, int width, int height) {
+        return scale(src, width, height, Resampler.DEFAULT_FILTER, TileScheduler.shared());
+    }
+
+    public static BufferedImage scale(BufferedImage src, int width, int height, Resampler.Filter filter,
+                                      TileScheduler scheduler) {
+        return Resampler.resize(src, width, height, filter, scheduler);
+    }
+}
@@ -0,0 +1,446 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.util.Locale;
+
+// Pojedyncza operacja na obrazie, np. "threshold:128" albo "rotate:90"
+public sealed interface ImageOperation
+        permits ImageOperation.PointOperation, ImageOperation.GeometricOperation, ImageOperation.NeighbourhoodOperation {
+
+    BufferedImage apply(BufferedImage image, TileScheduler scheduler);
+
+    default BufferedImage apply(BufferedImage image) {
+        return apply(image, TileScheduler.shared());
+    }
+
+    String spec();
+
+    // Rodzaj operacji bez parametrów, np. "threshold" dla "threshold:128" - nazwa w pomiarach
+    default String name() {
+        String spec = spec();
+        int colon = spec.indexOf(':');
+        return colon < 0 ? spec : spec.substring(0, colon);
+    }
+
+    // Operacja punktowa - piksel wyniku zależy tylko od tego samego piksela źródła, więc każdą można zapisać
+    // jako tablicę przekodowań, a kolejne takie operacje złożyć w jedną tablicę i jeden przebieg po pamięci
+    sealed interface PointOperation extends ImageOperation
+            permits Negative, Threshold, Grayscale, Gamma, BrightnessContrast, Levels {
+        PointLut lut();
+
+        // czy applyPixels ma własne (wektorowe) jądro - wtedy pojedyncza operacja nie korzysta z tablicy
+        default boolean hasKernel() {
+            return false;
+        }
+
+        default void applyPixels(int[] src, int[] dst, int from, int to) {
+            lut().apply(src, dst, from, to);
+        }
+
+        @Override
+        default BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.lookup(image, lut(), scheduler);
+        }
+    }
+
+    // Filtr sąsiedztwa (splot) - piksel wyniku zależy od otoczenia o promieniu radius(), więc obraz można liczyć
+    // kafelkami albo pasami, o ile każdy fragment czyta margines radius() pikseli
+    sealed interface NeighbourhoodOperation extends ImageOperation permits EdgeDetection, GaussianBlur, BoxBlur, Sharpen {
+        int radius();
+
+        // Fragment [x0, x1) x [y0, y1) obrazu width x height z src do dst (innej tablicy)
+        void applyTile(int[] src, int[] dst, int width, int height, int x0, int y0, int x1, int y1);
+    }
+
+    // Obrót, odbicie lub skalowanie - kolejne takie operacje składają się w jedno przepróbkowanie
+    sealed interface GeometricOperation extends ImageOperation permits Rotate, Flip, Scale {
+    }
+
+    static ImageOperation parse(String spec) {
+        String trimmed = spec.trim();
+        int colon = trimmed.indexOf(':');
+        String name = (colon < 0 ? trimmed : trimmed.substring(0, colon)).toLowerCase(Locale.ROOT);
+        String arg = colon < 0 ? null : trimmed.substring(colon + 1).trim();
+
+        try {
+            return switch (name) {
+                case "negative", "negatyw" -> new Negative();
+                case "threshold", "progowanie" -> new Threshold(arg == null ? 128 : Integer.parseInt(arg));
+                case "grayscale", "szarosc" -> new Grayscale();
+                case "gamma" -> new Gamma(Double.parseDouble(require(name, arg)));
+                case "brightness", "jasnosc" -> {
+                    // JASNOŚĆ albo JASNOŚĆ:KONTRAST
+                    String[] parts = require(name, arg).split(":");
+                    yield new BrightnessContrast(Integer.parseInt(parts[0].trim()),
+                            parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 1.0);
+                }
+                case "levels", "poziomy" -> {
+                    // CZERŃ:BIEL albo CZERŃ:BIEL:GAMMA
+                    String[] parts = require(name, arg).split(":");
+                    if (parts.length < 2) {
+                        throw new IllegalArgumentException("Oczekiwano poziomów w postaci CZERŃ:BIEL[:GAMMA]: " + arg);
+                    }
+                    yield new Levels(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                            parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 1.0);
+                }
+                case "edges", "konturowanie" -> new EdgeDetection(arg == null ? Convolution.Gradient.SOBEL : Convolution.Gradient.parse(arg));
+                case "blur", "rozmycie" -> new GaussianBlur(Double.parseDouble(require(name, arg)));
+                case "box" -> new BoxBlur(Integer.parseInt(require(name, arg)));
+                case "sharpen", "wyostrzanie" -> new Sharpen();
+                case "rotate", "obrot" -> new Rotate(Integer.parseInt(require(name, arg)));
+                case "flip", "odbicie" -> switch (arg == null ? "h" : arg.toLowerCase(Locale.ROOT)) {
+                    case "h", "poziomo" -> new Flip(true);
+                    case "v", "pionowo" -> new Flip(false);
+                    default -> throw new IllegalArgumentException("Oczekiwano kierunku odbicia h lub v: " + arg);
+                };
+                case "scale", "skalowanie" -> {
+                    // SZERxWYS albo SZERxWYS:metoda
+                    String[] parts = require(name, arg).split(":", 2);
+                    String[] size = parts[0].toLowerCase(Locale.ROOT).split("x");
+                    if (size.length != 2) {
+                        throw new IllegalArgumentException("Oczekiwano wymiarów w postaci SZERxWYS: " + arg);
+                    }
+                    Resampler.Filter filter = parts.length > 1 ? Resampler.Filter.parse(parts[1]) : Resampler.DEFAULT_FILTER;
+                    yield new Scale(Integer.parseInt(size[0].trim()), Integer.parseInt(size[1].trim()), filter);
+                }
+                default -> throw new IllegalArgumentException("Nieznana operacja: " + name);
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Niepoprawny parametr operacji '" + trimmed + "'", e);
+        }
+    }
+
+    private static String require(String name, String arg) {
+        if (arg == null || arg.isEmpty()) {
+            throw new IllegalArgumentException("Operacja '" + name + "' wymaga parametru");
+        }
+        return arg;
+    }
+
+    // Liczba w specyfikacji bez zbędnych zer, np. 2.2 albo 1
+    private static String number(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static void requirePositive(String what, double value) {
+        if (!(value > 0) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException(what + " musi być liczbą dodatnią: " + value);
+        }
+    }
+
+    record Negative() implements PointOperation {
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.negative(image, scheduler);
+        }
+
+        @Override
+        public PointLut lut() {
+            return PointLut.channels(v -> 255 - v);
+        }
+
+        @Override
+        public boolean hasKernel() {
+            return true;
+        }
+
+        @Override
+        public void applyPixels(int[] src, int[] dst, int from, int to) {
+            PixelKernels.negative(src, dst, from, to);
+        }
+
+        @Override
+        public String spec() {
+            return "negative";
+        }
+    }
+
+    record Threshold(int level) implements PointOperation {
+        public Threshold {
+            if (level < 0 || level > 255) {
+                throw new IllegalArgumentException("Próg musi być z zakresu 0-255: " + level);
+            }
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.threshold(image, level, scheduler);
+        }
+
+        @Override
+        public PointLut lut() {
+            return PointLut.luminance(v -> v < level ? 0 : 255, true);
+        }
+
+        @Override
+        public boolean hasKernel() {
+            return true;
+        }
+
+        @Override
+        public void applyPixels(int[] src, int[] dst, int from, int to) {
+            PixelKernels.threshold(src, dst, from, to, level);
+        }
+
+        @Override
+        public String spec() {
+            return "threshold:" + level;
+        }
+    }
+
+    record Grayscale() implements PointOperation {
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.grayscale(image, scheduler);
+        }
+
+        @Override
+        public PointLut lut() {
+            return PointLut.luminance(v -> v, false);
+        }
+
+        @Override
+        public boolean hasKernel() {
+            return true;
+        }
+
+        @Override
+        public void applyPixels(int[] src, int[] dst, int from, int to) {
+            PixelKernels.grayscale(src, dst, from, to);
+        }
+
+        @Override
+        public String spec() {
+            return "grayscale";
+        }
+    }
+
+    // Korekcja gamma: wartość > 1 rozjaśnia półtony, < 1 przyciemnia; czerń i biel bez zmian
+    record Gamma(double value) implements PointOperation {
+        public Gamma {
+            requirePositive("Gamma", value);
+        }
+
+        @Override
+        public PointLut lut() {
+            return PointLut.channels(v -> (int) Math.round(255 * Math.pow(v / 255.0, 1 / value)));
+        }
+
+        @Override
+        public String spec() {
+            return "gamma:" + number(value);
+        }
+    }
+
+    // Jasność (przesunięcie -255..255) i kontrast (mnożnik względem środka skali, 1 = bez zmian)
+    record BrightnessContrast(int brightness, double contrast) implements PointOperation {
+        public BrightnessContrast {
+            if (brightness < -255 || brightness > 255) {
+                throw new IllegalArgumentException("Jasność musi być z zakresu -255..255: " + brightness);
+            }
+            if (!(contrast >= 0) || Double.isInfinite(contrast)) {
+                throw new IllegalArgumentException("Kontrast musi być liczbą nieujemną: " + contrast);
+            }
+        }
+
+        @Override
+        public PointLut lut() {
+            return PointLut.channels(v -> (int) Math.round((v - 127.5) * contrast + 127.5 + brightness));
+        }
+
+        @Override
+        public String spec() {
+            String spec = "brightness:" + brightness;
+            return contrast == 1.0 ? spec : spec + ":" + number(contrast);
+        }
+    }
+
+    // Poziomy: wartości do black stają się czernią, od white bielą, przedział między nimi rozciągany
+    // na pełną skalę z korekcją gamma
+    record Levels(int black, int white, double gamma) implements PointOperation {
+        public Levels {
+            if (black < 0 || white > 255 || black >= white) {
+                throw new IllegalArgumentException("Poziomy muszą spełniać 0 <= czerń < biel <= 255: " + black + ", " + white);
+            }
+            requirePositive("Gamma", gamma);
+        }
+
+        @Override
+        public PointLut lut() {
+            return PointLut.channels(v -> {
+                double t = Math.min(1, Math.max(0, (v - black) / (double) (white - black)));
+                return (int) Math.round(255 * Math.pow(t, 1 / gamma));
+            });
+        }
+
+        @Override
+        public String spec() {
+            String spec = "levels:" + black + ":" + white;
+            return gamma == 1.0 ? spec : spec + ":" + number(gamma);
+        }
+    }
+
+    // Konturowanie - moduł gradientu jasności operatorem Sobela (domyślnie) albo Scharra
+    record EdgeDetection(Convolution.Gradient operator) implements NeighbourhoodOperation {
+        public EdgeDetection() {
+            this(Convolution.Gradient.SOBEL);
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.edgeDetection(image, operator, scheduler);
+        }
+
+        @Override
+        public int radius() {
+            return 1;
+        }
+
+        @Override
+        public void applyTile(int[] src, int[] dst, int width, int height, int x0, int y0, int x1, int y1) {
+            Convolution.gradientTile(src, dst, width, height, operator, ImageFilters.BORDER, x0, y0, x1, y1);
+        }
+
+        @Override
+        public String spec() {
+            return operator == Convolution.Gradient.SOBEL ? "edges" : "edges:" + operator.key();
+        }
+    }
+
+    record GaussianBlur(double sigma) implements NeighbourhoodOperation {
+        public GaussianBlur {
+            if (!(sigma > 0) || sigma > 100) {
+                throw new IllegalArgumentException("Sigma rozmycia musi być z zakresu (0, 100]: " + sigma);
+            }
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.convolve(image, Convolution.gaussian(sigma), scheduler);
+        }
+
+        @Override
+        public int radius() {
+            return Convolution.gaussianRadius(sigma);
+        }
+
+        @Override
+        public void applyTile(int[] src, int[] dst, int width, int height, int x0, int y0, int x1, int y1) {
+            Convolution.filterTile(src, dst, width, height, Convolution.gaussian(sigma), ImageFilters.BORDER, x0, y0, x1, y1);
+        }
+
+        @Override
+        public String spec() {
+            return "blur:" + number(sigma);
+        }
+    }
+
+    // Średnia z kwadratu (2 * radius + 1) x (2 * radius + 1)
+    record BoxBlur(int radius) implements NeighbourhoodOperation {
+        public BoxBlur {
+            if (radius < 1 || radius > 100) {
+                throw new IllegalArgumentException("Promień rozmycia musi być z zakresu 1-100: " + radius);
+            }
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.convolve(image, Convolution.box(radius), scheduler);
+        }
+
+        @Override
+        public void applyTile(int[] src, int[] dst, int width, int height, int x0, int y0, int x1, int y1) {
+            Convolution.filterTile(src, dst, width, height, Convolution.box(radius), ImageFilters.BORDER, x0, y0, x1, y1);
+        }
+
+        @Override
+        public String spec() {
+            return "box:" + radius;
+        }
+    }
+
+    record Sharpen() implements NeighbourhoodOperation {
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.convolve(image, Convolution.sharpen(), scheduler);
+        }
+
+        @Override
+        public int radius() {
+            return 1;
+        }
+
+        @Override
+        public void applyTile(int[] src, int[] dst, int width, int height, int x0, int y0, int x1, int y1) {
+            Convolution.filterTile(src, dst, width, height, Convolution.sharpen(), ImageFilters.BORDER, x0, y0, x1, y1);
+        }
+
+        @Override
+        public String spec() {
+            return "sharpen";
+        }
+    }
+
+    record Rotate(int angle) implements GeometricOperation {
+        public Rotate {
+            if (angle % 90 != 0) {
+                throw new IllegalArgumentException("Kąt obrotu musi być wielokrotnością 90: " + angle);
+            }
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.rotate(image, angle, scheduler);
+        }
+
+        public Orientation orientation() {
+            return Orientation.rotation(angle);
+        }
+
+        @Override
+        public String spec() {
+            return "rotate:" + angle;
+        }
+    }
+
+    // horizontal - odbicie lustrzane lewo-prawo, w przeciwnym razie góra-dół
+    record Flip(boolean horizontal) implements GeometricOperation {
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.flip(image, horizontal, scheduler);
+        }
+
+        public Orientation orientation() {
+            return Orientation.flip(horizontal);
+        }
+
+        @Override
+        public String spec() {
+            return horizontal ? "flip:h" : "flip:v";
+        }
+    }
+
+    record Scale(int width, int height, Resampler.Filter filter) implements GeometricOperation {
+        public Scale {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Wymiary muszą być dodatnie: " + width + "x" + height);
+            }
+        }
+
+        public Scale(int width, int height) {
+            this(width, height, Resampler.DEFAULT_FILTER);
+        }
+
+        @Override
+        public BufferedImage apply(BufferedImage image, TileScheduler scheduler) {
+            return ImageFilters.scale(image, width, height, filter, scheduler);
+        }
+
+        @Override
+        public String spec() {
+            String size = "scale:" + width + "x" + height;
+            return filter == Resampler.DEFAULT_FILTER ? size : size + ":" + filter.key();
+        }
+    }
+}
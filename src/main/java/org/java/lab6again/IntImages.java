@@ -0,0 +1,56 @@
+package org.java.lab6again;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+// Dostęp do pikseli obrazu jako int[] w formacie 0xAARRGGBB, bez getRGB/setRGB dla każdego piksela
+public final class IntImages {
+
+    private IntImages() {
+    }
+
+    // Zwraca obraz TYPE_INT_RGB/TYPE_INT_ARGB - ten sam obiekt, jeśli już ma taki format, w przeciwnym razie jednorazową kopię
+    public static BufferedImage toIntImage(BufferedImage image) {
+        if (isPackedInt(image)) {
+            return image;
+        }
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    // Tablica pikseli obrazu, wiersz po wierszu, bez odstępów między wierszami
+    public static int[] pixels(BufferedImage image) {
+        if (!isPackedInt(image)) {
+            throw new IllegalArgumentException("Obraz nie jest typu TYPE_INT_RGB/TYPE_INT_ARGB: " + image.getType());
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    public static BufferedImage create(int width, int height, boolean alpha) {
+        return new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    }
+
+    public static boolean hasAlpha(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_INT_ARGB;
+    }
+
+    static boolean isPackedInt(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+            return false;
+        }
+        // podobrazy (getSubimage) mają przesunięcie i dłuższe wiersze - dla nich robimy kopię
+        WritableRaster raster = image.getRaster();
+        return raster.getParent() == null
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                && sm.getScanlineStride() == image.getWidth();
+    }
+}
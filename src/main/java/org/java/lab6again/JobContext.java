@@ -0,0 +1,65 @@
+package org.java.lab6again;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+// Stan zadania filtrującego: postęp w kafelkach i flaga anulowania sprawdzana przed każdym kafelkiem.
+// Zadanie składa się z etapów (każde wywołanie forEachSpan/forEachTile), których liczby nie znamy z góry -
+// zależy od operacji i rozmiaru obrazu. Pierwszy etap wypełnia połowę paska postępu, każdy kolejny połowę
+// tego, co zostało, więc postęp rośnie przez całe zadanie i nie dochodzi do końca przed ostatnim etapem.
+public final class JobContext {
+
+    // etap liczony od 0 (-1 - jeszcze żaden) i jego kafelki; chronione przez this
+    private int stage = -1;
+    private long stageTotal;
+    private long stageDone;
+    private final AtomicInteger lastPercent = new AtomicInteger(-1);
+    private final DoubleConsumer listener;
+    private volatile boolean cancelled;
+
+    public JobContext(DoubleConsumer listener) {
+        this.listener = listener;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Zadanie zostało anulowane");
+        }
+    }
+
+    public synchronized double progress() {
+        if (stage < 0) {
+            return 0;
+        }
+        double fraction = stageTotal == 0 ? 1 : Math.min(1.0, (double) stageDone / stageTotal);
+        return 1 - Math.pow(0.5, stage) * (1 - fraction / 2);
+    }
+
+    // Początek kolejnego etapu z podaną liczbą kafelków
+    synchronized void addWork(long units) {
+        stage++;
+        stageTotal = units;
+        stageDone = 0;
+    }
+
+    void worked(long units) {
+        synchronized (this) {
+            stageDone += units;
+        }
+        // powiadamiamy tylko przy wzroście o pełny procent, żeby nie zasypać wątku UI
+        int percent = (int) (progress() * 100);
+        int previous = lastPercent.get();
+        if (listener != null && percent > previous && lastPercent.compareAndSet(previous, percent)) {
+            listener.accept(percent / 100.0);
+        }
+    }
+}
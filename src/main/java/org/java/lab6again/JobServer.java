@@ -0,0 +1,304 @@
+package org.java.lab6again;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Serwer zadań HTTP: POST /process?ops=<łańcuch>[&format=jpg|png|tif|bmp][&quality=1-100] z plikiem obrazu
+// w treści, w odpowiedzi przetworzony obraz. Każde połączenie obsługuje osobny wątek wirtualny - czytanie
+// i wysyłanie bajtów nie zajmuje wątków platformy. Dekodowanie, filtry i kodowanie idą na puli roboczej
+// o stałej liczbie wątków. Liczba przyjętych zadań (liczonych i czekających) jest ograniczona, a zadanie jest
+// przyjmowane przed odczytem treści żądania - gdy miejsc brak, serwer od razu odpowiada 503 z nagłówkiem
+// Retry-After, więc w pamięci jest co najwyżej workers + queue plików i obrazów.
+// GET /health - stan serwera, GET /metrics[?format=json] - metryki jak w pliku z Metrics.
+public final class JobServer implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(JobServer.class.getName());
+
+    private final HttpServer server;
+    private final ExecutorService connections;
+    private final ThreadPoolExecutor workers;
+    private final long maxRequestBytes;
+    // miejsca dla zadań liczonych i czekających w kolejce; zwalniane dopiero po zakończeniu zadania
+    private final Semaphore admitted;
+    private final Duration timeout;
+
+    // workers - zadania liczone jednocześnie, queue - zadania czekające na wolny wątek,
+    // timeout - najdłuższy czas oczekiwania połączenia na wynik zadania
+    public JobServer(InetSocketAddress address, int workers, int queue, long maxRequestBytes, Duration timeout)
+            throws IOException {
+        if (workers < 1 || queue < 0 || maxRequestBytes < 1 || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Nieprawidłowe parametry serwera: wątki " + workers + ", kolejka " + queue
+                    + ", rozmiar żądania " + maxRequestBytes + ", limit czasu " + timeout);
+        }
+        this.maxRequestBytes = maxRequestBytes;
+        this.admitted = new Semaphore(workers + queue);
+        this.timeout = timeout;
+        AtomicInteger threadIndex = new AtomicInteger();
+        // kolejka bez limitu - liczbę zadań ogranicza admitted
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "serwer-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        Metrics.global().registerPool("serwer", this.workers);
+
+        this.connections = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory());
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(connections);
+        server.createContext("/process", exchange -> handle(exchange, this::process));
+        server.createContext("/health", exchange -> handle(exchange, this::health));
+        server.createContext("/metrics", exchange -> handle(exchange, this::metrics));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static void handle(HttpExchange exchange, Handler handler) {
+        try (exchange) {
+            handler.handle(exchange);
+        } catch (IOException e) {
+            // klient zwykle po prostu się rozłączył
+            logger.log(Level.FINE, "Przerwane połączenie z " + exchange.getRemoteAddress(), e);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Błąd obsługi żądania " + exchange.getRequestURI(), e);
+        }
+    }
+
+    private void process(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            sendText(exchange, 405, "Dozwolona jest tylko metoda POST");
+            return;
+        }
+        Map<String, String> query = query(exchange);
+        OperationChain chain;
+        String format = query.getOrDefault("format", "jpg").toLowerCase(Locale.ROOT);
+        float quality;
+        try {
+            String spec = query.get("ops");
+            if (spec == null || spec.isBlank()) {
+                throw new IllegalArgumentException("Brak parametru ops z łańcuchem operacji");
+            }
+            chain = OperationChain.parse(spec);
+            if (!ImageCodecs.canWrite(format)) {
+                throw new IllegalArgumentException("Nieobsługiwany format wyniku: " + format);
+            }
+            int percent = Integer.parseInt(query.getOrDefault("quality", "75"));
+            if (percent < 1 || percent > 100) {
+                throw new IllegalArgumentException("Jakość JPEG musi być z zakresu 1-100");
+            }
+            quality = percent / 100f;
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage());
+            return;
+        }
+
+        // miejsce zajmowane przed odczytem treści - odrzucone żądanie nie trzyma pliku w pamięci
+        if (!admitted.tryAcquire()) {
+            reject(exchange);
+            return;
+        }
+        Future<byte[]> result = null;
+        JobContext job = new JobContext(null);
+        try {
+            byte[] body = readBody(exchange);
+            if (body == null) {
+                sendText(exchange, 413, "Obraz większy niż " + maxRequestBytes + " B");
+                return;
+            }
+            result = workers.submit(() -> {
+                try {
+                    return run(body, chain, format, quality, job);
+                } finally {
+                    admitted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // pula zamknięta w trakcie zatrzymywania serwera
+            reject(exchange);
+            return;
+        } finally {
+            if (result == null) {
+                admitted.release();
+            }
+        }
+
+        byte[] output;
+        try {
+            output = result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            abandon(result, job);
+            Thread.currentThread().interrupt();
+            return;
+        } catch (TimeoutException e) {
+            abandon(result, job);
+            logger.warning("Przekroczono limit czasu zadania " + chain.spec());
+            sendText(exchange, 504, "Przekroczono limit czasu przetwarzania (" + timeout.toSeconds() + " s)");
+            return;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException || cause instanceof IllegalArgumentException) {
+                sendText(exchange, 400, "Nie udało się przetworzyć obrazu: " + cause.getMessage());
+            } else {
+                logger.log(Level.SEVERE, "Błąd podczas przetwarzania zadania " + chain.spec(), cause);
+                sendText(exchange, 500, "Błąd podczas przetwarzania obrazu");
+            }
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType(format));
+        exchange.sendResponseHeaders(200, output.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(output);
+        }
+    }
+
+    private static void reject(HttpExchange exchange) throws IOException {
+        // w metrykach jako licznik lab6_rejected_total
+        Metrics.global().increment("rejected");
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendText(exchange, 503, "Serwer jest przeciążony, spróbuj ponownie");
+    }
+
+    // Zadanie, na którego wynik nikt już nie czeka: zdjęte z kolejki zwalnia miejsce od razu (nie uruchomi się),
+    // a rozpoczęte pomija pozostałe kafelki i zwalnia miejsce samo po zakończeniu
+    private void abandon(Future<byte[]> result, JobContext job) {
+        job.cancel();
+        if (workers.remove((Runnable) result)) {
+            admitted.release();
+        }
+        result.cancel(true);
+    }
+
+    // Na wątku puli roboczej; kafelki filtrów i tak rozkładane są na wspólny harmonogram
+    private static byte[] run(byte[] data, OperationChain chain, String format, float quality, JobContext job)
+            throws IOException {
+        Metrics.Sample sample = Metrics.global().start("zadanie");
+        BufferedImage image = ImageCodecs.read(data);
+        job.checkCancelled();
+        BufferedImage result = chain.apply(image, TileScheduler.shared().forJob(job), true);
+        job.checkCancelled();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(data.length, 8192));
+        ImageCodecs.write(result, out, format, quality);
+        sample.stop(image.getWidth(), image.getHeight());
+        return out.toByteArray();
+    }
+
+    // Treść żądania albo null, jeśli przekracza limit
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length) > maxRequestBytes) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxRequestBytes + 1));
+            return body.length > maxRequestBytes ? null : body;
+        }
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        sendText(exchange, 200, "ok\nwątki: " + workers.getMaximumPoolSize() + ", zajęte: " + workers.getActiveCount()
+                + ", w kolejce: " + workers.getQueue().size() + ", wolne miejsca: " + admitted.availablePermits());
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        Metrics.Snapshot snapshot = Metrics.global().snapshot();
+        boolean json = "json".equals(query(exchange).get("format"));
+        byte[] content = (json ? snapshot.toJson() : snapshot.toPrometheus()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                json ? "application/json; charset=utf-8" : "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] content = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String contentType(String format) {
+        return switch (format) {
+            case "jpg", "jpeg" -> "image/jpeg";
+            case "png" -> "image/png";
+            case "tif", "tiff" -> "image/tiff";
+            case "bmp" -> "image/bmp";
+            default -> "application/octet-stream";
+        };
+    }
+
+    // Nowe połączenia są odrzucane od razu, rozpoczęte zadania mają chwilę na zakończenie
+    @Override
+    public void close() {
+        server.stop(1);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connections.close();
+        Metrics.global().unregisterPool("serwer", workers);
+    }
+}
@@ -0,0 +1,501 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+
+// Dekodowanie JPEG w skali 1/8 w dziedzinie DCT: z każdego bloku 8x8 brany jest tylko współczynnik DC,
+// czyli średnia bloku - bez odwrotnej DCT, bez konwersji kolorów dla pełnej rozdzielczości. Dane entropijne
+// i tak trzeba przejść w całości (współczynniki AC są odczytywane i pomijane), ale to ułamek pracy dekodera.
+// Obsługiwany jest tylko JPEG sekwencyjny z kodowaniem Huffmana, 8 bitów, 1 albo 3 składowe w jednym skanie;
+// dla pozostałych (progresywny, CMYK, wiele skanów) decode zwraca null i trzeba dekodować zwykłą drogą.
+final class JpegDcDecoder {
+
+    private final byte[] data;
+    private int pos;
+
+    private int width;
+    private int height;
+    private Component[] components;
+    private int maxH = 1;
+    private int maxV = 1;
+    private int restartInterval;
+    // Adobe APP14 z transformacją 0 (albo składowe o identyfikatorach 'R', 'G', 'B') - trzy składowe to RGB,
+    // a nie YCbCr
+    private boolean rgb;
+    private final int[][] quantization = new int[4][];
+    private final Huffman[] dcTables = new Huffman[4];
+    private final Huffman[] acTables = new Huffman[4];
+
+    // bity danych entropijnych
+    private int bitBuffer;
+    private int bitCount;
+    private boolean markerReached;
+
+    private static final class Component {
+        final int id;
+        // próbkowanie; w skanie jednej składowej 1x1
+        int h;
+        int v;
+        final int table;
+        Huffman dc;
+        Huffman ac;
+        int predictor;
+        // średnie bloków (0-255) w siatce bloków składowej
+        int blocksWide;
+        int blocksHigh;
+        byte[] plane;
+
+        Component(int id, int h, int v, int table) {
+            this.id = id;
+            this.h = h;
+            this.v = v;
+            this.table = table;
+        }
+    }
+
+    private JpegDcDecoder(byte[] data) {
+        this.data = data;
+    }
+
+    // Obraz ceil(w / 8) x ceil(h / 8) typu INT_RGB albo null, jeśli plik nie jest obsługiwanym JPEG-iem
+    static BufferedImage decode(byte[] data) {
+        try {
+            return new JpegDcDecoder(data).decode();
+        } catch (IndexOutOfBoundsException e) {
+            // ucięty albo uszkodzony plik - niech zgłosi to zwykły dekoder
+            return null;
+        }
+    }
+
+    private BufferedImage decode() {
+        if (data.length < 4 || (data[0] & 0xff) != 0xff || (data[1] & 0xff) != 0xd8) {
+            return null;
+        }
+        pos = 2;
+        while (true) {
+            int marker = nextMarker();
+            if (marker < 0) {
+                return null;
+            }
+            int length = readShort(pos);
+            int end = pos + length;
+            switch (marker) {
+                case 0xc0, 0xc1 -> {
+                    if (!readFrame(pos + 2)) {
+                        return null;
+                    }
+                }
+                case 0xc4 -> readHuffmanTables(pos + 2, end);
+                case 0xdb -> readQuantizationTables(pos + 2, end);
+                case 0xdd -> restartInterval = readShort(pos + 2);
+                case 0xee -> rgb = length >= 14 && data[pos + 2] == 'A' && data[pos + 3] == 'd'
+                        && data[pos + 4] == 'o' && data[pos + 5] == 'b' && data[pos + 6] == 'e'
+                        && data[pos + 13] == 0;
+                case 0xda -> {
+                    if (components == null || !readScanHeader(pos + 2)) {
+                        return null;
+                    }
+                    pos = end;
+                    readScan();
+                    return toImage();
+                }
+                // inne SOF: progresywny, bezstratny, arytmetyczny
+                case 0xc2, 0xc3, 0xc5, 0xc6, 0xc7, 0xc9, 0xca, 0xcb, 0xcd, 0xce, 0xcf -> {
+                    return null;
+                }
+                default -> {
+                }
+            }
+            pos = end;
+        }
+    }
+
+    // Następny znacznik segmentu (pos za nim) albo -1 przy końcu pliku
+    private int nextMarker() {
+        while (pos + 1 < data.length) {
+            if ((data[pos] & 0xff) != 0xff) {
+                pos++;
+                continue;
+            }
+            int marker = data[pos + 1] & 0xff;
+            pos += 2;
+            if (marker == 0xd9) {
+                return -1;
+            }
+            if (marker != 0xff && marker != 0 && (marker < 0xd0 || marker > 0xd7)) {
+                return marker;
+            }
+            if (marker == 0xff) {
+                pos--;
+            }
+        }
+        return -1;
+    }
+
+    private boolean readFrame(int at) {
+        if ((data[at] & 0xff) != 8) {
+            return false;
+        }
+        height = readShort(at + 1);
+        width = readShort(at + 3);
+        int count = data[at + 5] & 0xff;
+        if (width == 0 || height == 0 || (count != 1 && count != 3)) {
+            return false;
+        }
+        components = new Component[count];
+        for (int i = 0; i < count; i++) {
+            int base = at + 6 + i * 3;
+            int sampling = data[base + 1] & 0xff;
+            Component component = new Component(data[base] & 0xff, sampling >> 4, sampling & 15, data[base + 2] & 3);
+            if (component.h < 1 || component.h > 4 || component.v < 1 || component.v > 4) {
+                return false;
+            }
+            components[i] = component;
+            maxH = Math.max(maxH, component.h);
+            maxV = Math.max(maxV, component.v);
+        }
+        rgb |= count == 3 && components[0].id == 'R' && components[1].id == 'G' && components[2].id == 'B';
+        return true;
+    }
+
+    private void readQuantizationTables(int at, int end) {
+        while (at < end) {
+            int precision = (data[at] & 0xff) >> 4;
+            int id = data[at] & 3;
+            int[] table = new int[64];
+            for (int k = 0; k < 64; k++) {
+                table[k] = precision == 0 ? data[at + 1 + k] & 0xff : readShort(at + 1 + 2 * k);
+            }
+            quantization[id] = table;
+            at += 1 + 64 * (precision == 0 ? 1 : 2);
+        }
+    }
+
+    private void readHuffmanTables(int at, int end) {
+        while (at < end) {
+            int kind = (data[at] & 0xff) >> 4;
+            int id = data[at] & 3;
+            int[] counts = new int[17];
+            int total = 0;
+            for (int length = 1; length <= 16; length++) {
+                counts[length] = data[at + length] & 0xff;
+                total += counts[length];
+            }
+            int[] symbols = new int[total];
+            for (int i = 0; i < total; i++) {
+                symbols[i] = data[at + 17 + i] & 0xff;
+            }
+            Huffman table = new Huffman(counts, symbols);
+            if (kind == 0) {
+                dcTables[id] = table;
+            } else {
+                acTables[id] = table;
+            }
+            at += 17 + total;
+        }
+    }
+
+    // Obsługiwany jest tylko jeden skan ze wszystkimi składowymi
+    private boolean readScanHeader(int at) {
+        int count = data[at] & 0xff;
+        if (count != components.length) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int id = data[at + 1 + i * 2] & 0xff;
+            int tables = data[at + 2 + i * 2] & 0xff;
+            Component component = components[i].id == id ? components[i] : null;
+            if (component == null) {
+                return false;
+            }
+            component.dc = dcTables[tables >> 4 & 3];
+            component.ac = acTables[tables & 3];
+            if (component.dc == null || component.ac == null || quantization[component.table] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readScan() {
+        int mcusWide;
+        int mcusHigh;
+        if (components.length == 1) {
+            // skan jednej składowej nie jest przeplatany - jednostką jest pojedynczy blok
+            Component component = components[0];
+            component.h = 1;
+            component.v = 1;
+            maxH = 1;
+            maxV = 1;
+            mcusWide = (width + 7) / 8;
+            mcusHigh = (height + 7) / 8;
+        } else {
+            mcusWide = (width + 8 * maxH - 1) / (8 * maxH);
+            mcusHigh = (height + 8 * maxV - 1) / (8 * maxV);
+        }
+        for (Component component : components) {
+            component.blocksWide = mcusWide * component.h;
+            component.blocksHigh = mcusHigh * component.v;
+            component.plane = new byte[component.blocksWide * component.blocksHigh];
+        }
+
+        int mcus = mcusWide * mcusHigh;
+        for (int mcu = 0; mcu < mcus; mcu++) {
+            if (restartInterval > 0 && mcu > 0 && mcu % restartInterval == 0) {
+                restart();
+            }
+            int mcuX = mcu % mcusWide;
+            int mcuY = mcu / mcusWide;
+            for (Component component : components) {
+                int dcStep = quantization[component.table][0];
+                for (int by = 0; by < component.v; by++) {
+                    for (int bx = 0; bx < component.h; bx++) {
+                        component.predictor += decodeDc(component.dc);
+                        skipAc(component.ac);
+                        // DC = 8 * (średnia - 128)
+                        int mean = ((component.predictor * dcStep + 4) >> 3) + 128;
+                        int x = mcuX * component.h + bx;
+                        int y = mcuY * component.v + by;
+                        component.plane[y * component.blocksWide + x] = (byte) PointLut.clamp(mean);
+                    }
+                }
+            }
+        }
+    }
+
+    private void restart() {
+        bitBuffer = 0;
+        bitCount = 0;
+        markerReached = false;
+        // znacznik RSTn
+        while (pos + 1 < data.length && !((data[pos] & 0xff) == 0xff && (data[pos + 1] & 0xff) >= 0xd0
+                && (data[pos + 1] & 0xff) <= 0xd7)) {
+            pos++;
+        }
+        pos += 2;
+        for (Component component : components) {
+            component.predictor = 0;
+        }
+    }
+
+    private BufferedImage toImage() {
+        int outWidth = (width + 7) / 8;
+        int outHeight = (height + 7) / 8;
+        BufferedImage image = IntImages.create(outWidth, outHeight, false);
+        int[] pixels = IntImages.pixels(image);
+        if (components.length == 1) {
+            Component gray = components[0];
+            for (int y = 0; y < outHeight; y++) {
+                for (int x = 0; x < outWidth; x++) {
+                    int v = gray.plane[y * gray.blocksWide + x] & 0xff;
+                    pixels[y * outWidth + x] = 0xff000000 | (v << 16) | (v << 8) | v;
+                }
+            }
+            return image;
+        }
+        int[] c0 = samples(components[0], outWidth, outHeight);
+        int[] c1 = samples(components[1], outWidth, outHeight);
+        int[] c2 = samples(components[2], outWidth, outHeight);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = rgb ? 0xff000000 | (c0[i] << 16) | (c1[i] << 8) | c2[i] : ycc(c0[i], c1[i], c2[i]);
+        }
+        return image;
+    }
+
+    // Wartości składowej w środkach bloków 8x8 obrazu; składowa próbkowana rzadziej (chrominancja 4:2:0 itp.)
+    // interpolowana dwuliniowo między środkami swoich bloków, żeby kolor nie był przesunięty o pół bloku
+    private int[] samples(Component component, int outWidth, int outHeight) {
+        int[] result = new int[outWidth * outHeight];
+        // bloki z danymi obrazu (reszta to dopełnienie do pełnych MCU)
+        int validWide = ((width * component.h + maxH - 1) / maxH + 7) / 8;
+        int validHigh = ((height * component.v + maxV - 1) / maxV + 7) / 8;
+        Axis columns = new Axis(outWidth, component.h, maxH, validWide);
+        Axis rows = new Axis(outHeight, component.v, maxV, validHigh);
+        for (int y = 0; y < outHeight; y++) {
+            int top = rows.first[y] * component.blocksWide;
+            int bottom = rows.second[y] * component.blocksWide;
+            int wy = rows.weight[y];
+            for (int x = 0; x < outWidth; x++) {
+                int wx = columns.weight[x];
+                int upper = (component.plane[top + columns.first[x]] & 0xff) * (256 - wx)
+                        + (component.plane[top + columns.second[x]] & 0xff) * wx;
+                int lower = (component.plane[bottom + columns.first[x]] & 0xff) * (256 - wx)
+                        + (component.plane[bottom + columns.second[x]] & 0xff) * wx;
+                result[y * outWidth + x] = (upper * (256 - wy) + lower * wy + (1 << 15)) >> 16;
+            }
+        }
+        return result;
+    }
+
+    // Dla każdego bloku obrazu wzdłuż osi: sąsiednie bloki składowej i waga drugiego z nich (0-256)
+    private static final class Axis {
+        final int[] first;
+        final int[] second;
+        final int[] weight;
+
+        Axis(int count, int sampling, int max, int valid) {
+            first = new int[count];
+            second = new int[count];
+            weight = new int[count];
+            for (int i = 0; i < count; i++) {
+                // środek bloku obrazu w jednostkach bloków składowej, liczony od środka pierwszego bloku
+                double position = (i + 0.5) * sampling / max - 0.5;
+                int base = (int) Math.floor(position);
+                first[i] = Math.max(0, Math.min(valid - 1, base));
+                second[i] = Math.max(0, Math.min(valid - 1, base + 1));
+                weight[i] = (int) Math.round((position - base) * 256);
+            }
+        }
+    }
+
+    // YCbCr (JFIF) -> RGB, stałoprzecinkowo z 16 bitami ułamka
+    private static int ycc(int luma, int cb, int cr) {
+        int y = luma << 16;
+        cb -= 128;
+        cr -= 128;
+        int r = PointLut.clamp((y + 91881 * cr + 32768) >> 16);
+        int g = PointLut.clamp((y - 22554 * cb - 46802 * cr + 32768) >> 16);
+        int b = PointLut.clamp((y + 116130 * cb + 32768) >> 16);
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private int decodeDc(Huffman table) {
+        int size = table.decode(this);
+        return size == 0 ? 0 : extend(readBits(size), size);
+    }
+
+    private void skipAc(Huffman table) {
+        for (int k = 1; k < 64; k++) {
+            int symbol = table.skip(this);
+            if ((symbol & 15) == 0) {
+                if (symbol != 0xf0) {
+                    return;
+                }
+                k += 15;
+            } else {
+                k += symbol >> 4;
+            }
+        }
+    }
+
+    private static int extend(int value, int size) {
+        return value < 1 << (size - 1) ? value - (1 << size) + 1 : value;
+    }
+
+    private void fill() {
+        while (bitCount <= 24) {
+            int next = 0;
+            if (!markerReached && pos < data.length) {
+                next = data[pos] & 0xff;
+                if (next == 0xff) {
+                    int following = pos + 1 < data.length ? data[pos + 1] & 0xff : 0xd9;
+                    if (following == 0) {
+                        pos += 2;
+                    } else {
+                        // znacznik - dalej same zera, aż restart() go przeskoczy
+                        markerReached = true;
+                        next = 0;
+                    }
+                } else {
+                    pos++;
+                }
+            }
+            bitBuffer |= next << (24 - bitCount);
+            bitCount += 8;
+        }
+    }
+
+    private int peekBits(int count) {
+        if (bitCount < count) {
+            fill();
+        }
+        return bitBuffer >>> (32 - count);
+    }
+
+    private void skipBits(int count) {
+        bitBuffer <<= count;
+        bitCount -= count;
+    }
+
+    private int readBits(int count) {
+        int value = peekBits(count);
+        skipBits(count);
+        return value;
+    }
+
+    private int readShort(int at) {
+        return ((data[at] & 0xff) << 8) | (data[at + 1] & 0xff);
+    }
+
+    // Kanoniczny kod Huffmana: kody do 9 bitów z tablicy, dłuższe przez maxCode
+    private static final class Huffman {
+        private static final int FAST_BITS = 9;
+
+        // (długość << 8) | symbol albo 0 dla dłuższych kodów
+        private final int[] fast = new int[1 << FAST_BITS];
+        // jak fast, ale długość obejmuje też dodatkowe bity współczynnika AC (rozmiar z młodszych 4 bitów symbolu)
+        private final int[] fastSkip = new int[1 << FAST_BITS];
+        private final int[] maxCode = new int[18];
+        private final int[] offset = new int[17];
+        private final int[] symbols;
+
+        Huffman(int[] counts, int[] symbols) {
+            this.symbols = symbols;
+            int code = 0;
+            int index = 0;
+            for (int length = 1; length <= 16; length++) {
+                offset[length] = index - code;
+                for (int i = 0; i < counts[length]; i++) {
+                    if (length <= FAST_BITS) {
+                        int shift = FAST_BITS - length;
+                        for (int fill = 0; fill < 1 << shift; fill++) {
+                            fast[(code << shift) | fill] = (length << 8) | symbols[index];
+                            fastSkip[(code << shift) | fill] = ((length + (symbols[index] & 15)) << 8) | symbols[index];
+                        }
+                    }
+                    code++;
+                    index++;
+                }
+                // największy kod tej długości (wyrównany do 16 bitów), -1 gdy brak
+                maxCode[length] = counts[length] == 0 ? -1 : (code - 1) << (16 - length) | ((1 << (16 - length)) - 1);
+                code <<= 1;
+            }
+            maxCode[17] = Integer.MAX_VALUE;
+        }
+
+        int decode(JpegDcDecoder in) {
+            int bits = in.peekBits(16);
+            int entry = fast[bits >>> (16 - FAST_BITS)];
+            if (entry != 0) {
+                in.skipBits(entry >> 8);
+                return entry & 0xff;
+            }
+            int length = FAST_BITS + 1;
+            while (length <= 16 && (maxCode[length] < 0 || bits > maxCode[length])) {
+                length++;
+            }
+            if (length > 16) {
+                throw new IndexOutOfBoundsException("Niepoprawny kod Huffmana");
+            }
+            in.skipBits(length);
+            return symbols[offset[length] + (bits >>> (16 - length))];
+        }
+
+        // Symbol AC razem z jego dodatkowymi bitami - sama wartość współczynnika nie jest potrzebna
+        int skip(JpegDcDecoder in) {
+            // kod do FAST_BITS bitów i najwyżej 15 dodatkowych mieszczą się w 25 bitach po fill()
+            if (in.bitCount < 25) {
+                in.fill();
+            }
+            int entry = fastSkip[in.bitBuffer >>> (32 - FAST_BITS)];
+            if (entry != 0) {
+                in.skipBits(entry >> 8);
+                return entry & 0xff;
+            }
+            int symbol = decode(in);
+            if ((symbol & 15) != 0) {
+                in.readBits(symbol & 15);
+            }
+            return symbol;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.java.lab6again;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Pomiary działania: histogram czasów i liczba pikseli dla każdej operacji (stąd megapiksele na sekundę),
+// a dla zarejestrowanych pul wątków - liczba zadań w kolejce i zajętość; do tego liczniki zdarzeń (np. odrzucone
+// żądania serwera). Każdy pomiar jest też zdarzeniem JFR.
+// Stan można zapisać do pliku jako JSON albo w formacie tekstowym Prometheusa (np. dla textfile collectora
+// node_exportera) - jednorazowo lub okresowo.
+public final class Metrics {
+
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorService> pools = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private static final class OperationStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder pixels = new LongAdder();
+    }
+
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    // Początek pomiaru operacji; wynik liczy się dopiero po stop() - operacja zakończona wyjątkiem nie jest liczona
+    public Sample start(String operation) {
+        return new Sample(this, operation);
+    }
+
+    public static final class Sample {
+        private final Metrics metrics;
+        private final String operation;
+        private final OperationEvent event = new OperationEvent();
+        private final long start;
+
+        private Sample(Metrics metrics, String operation) {
+            this.metrics = metrics;
+            this.operation = operation;
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        // width x height - rozmiar przetworzonego obrazu (do przepustowości w megapikselach na sekundę)
+        public void stop(int width, int height) {
+            long elapsed = System.nanoTime() - start;
+            event.end();
+            metrics.record(operation, elapsed, (long) width * height);
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.width = width;
+                event.height = height;
+                event.commit();
+            }
+        }
+    }
+
+    public void record(String operation, long nanos, long pixels) {
+        OperationStats stats = operations.computeIfAbsent(operation, name -> new OperationStats());
+        stats.latency.record(nanos);
+        stats.pixels.add(pixels);
+    }
+
+    // Zdarzenie bez czasu trwania - w formacie Prometheusa licznik lab6_<name>_total
+    public void increment(String counter) {
+        counters.computeIfAbsent(counter, name -> new LongAdder()).increment();
+    }
+
+    // Pula widoczna w pomiarach pod podaną nazwą (ForkJoinPool albo ThreadPoolExecutor)
+    public void registerPool(String name, ExecutorService pool) {
+        pools.put(name, pool);
+    }
+
+    public void unregisterPool(String name, ExecutorService pool) {
+        pools.remove(name, pool);
+    }
+
+    public record OperationSnapshot(String name, LatencyHistogram.Snapshot latency, long pixels) {
+        public double megapixelsPerSecond() {
+            return latency.sumNanos() == 0 ? 0 : pixels / 1e6 / (latency.sumNanos() / 1e9);
+        }
+    }
+
+    // threads - liczba wątków puli, active - zajęte wątki, queued - zadania czekające w kolejce
+    public record PoolSnapshot(String name, int threads, int active, long queued) {
+        public double utilisation() {
+            return threads == 0 ? 0 : Math.min(1.0, (double) active / threads);
+        }
+    }
+
+    // counters - liczniki zdarzeń według nazwy, posortowane
+    public record Snapshot(Instant time, List<OperationSnapshot> operations, List<PoolSnapshot> pools,
+                           Map<String, Long> counters) {
+
+        public String toJson() {
+            StringBuilder json = new StringBuilder();
+            json.append("{\"time\":\"").append(time).append("\",\"operations\":[");
+            for (int i = 0; i < operations.size(); i++) {
+                OperationSnapshot operation = operations.get(i);
+                LatencyHistogram.Snapshot latency = operation.latency();
+                json.append(i == 0 ? "" : ",").append("{\"name\":").append(jsonString(operation.name()))
+                        .append(",\"count\":").append(latency.count())
+                        .append(",\"sumSeconds\":").append(number(latency.sumNanos() / 1e9))
+                        .append(",\"meanSeconds\":").append(number(latency.meanNanos() / 1e9))
+                        .append(",\"p50Seconds\":").append(number(latency.percentileNanos(0.5) / 1e9))
+                        .append(",\"p90Seconds\":").append(number(latency.percentileNanos(0.9) / 1e9))
+                        .append(",\"p99Seconds\":").append(number(latency.percentileNanos(0.99) / 1e9))
+                        .append(",\"maxSeconds\":").append(number(latency.maxNanos() / 1e9))
+                        .append(",\"pixels\":").append(operation.pixels())
+                        .append(",\"megapixelsPerSecond\":").append(number(operation.megapixelsPerSecond()))
+                        .append('}');
+            }
+            json.append("],\"pools\":[");
+            for (int i = 0; i < pools.size(); i++) {
+                PoolSnapshot pool = pools.get(i);
+                json.append(i == 0 ? "" : ",").append("{\"name\":").append(jsonString(pool.name()))
+                        .append(",\"threads\":").append(pool.threads())
+                        .append(",\"active\":").append(pool.active())
+                        .append(",\"queued\":").append(pool.queued())
+                        .append(",\"utilisation\":").append(number(pool.utilisation()))
+                        .append('}');
+            }
+            json.append("],\"counters\":{");
+            String separator = "";
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                json.append(separator).append(jsonString(counter.getKey())).append(':').append(counter.getValue());
+                separator = ",";
+            }
+            return json.append("}}\n").toString();
+        }
+
+        public String toPrometheus() {
+            StringBuilder text = new StringBuilder();
+            text.append("# HELP lab6_operation_seconds Czas operacji na obrazie\n");
+            text.append("# TYPE lab6_operation_seconds summary\n");
+            for (OperationSnapshot operation : operations) {
+                String label = "operation=\"" + labelValue(operation.name()) + "\"";
+                LatencyHistogram.Snapshot latency = operation.latency();
+                for (double q : new double[]{0.5, 0.9, 0.99}) {
+                    text.append("lab6_operation_seconds{").append(label).append(",quantile=\"").append(q).append("\"} ")
+                            .append(number(latency.percentileNanos(q) / 1e9)).append('\n');
+                }
+                text.append("lab6_operation_seconds_sum{").append(label).append("} ")
+                        .append(number(latency.sumNanos() / 1e9)).append('\n');
+                text.append("lab6_operation_seconds_count{").append(label).append("} ").append(latency.count()).append('\n');
+            }
+            metric(text, "lab6_operation_seconds_max", "gauge", "Najdłuższy czas operacji",
+                    operations, o -> number(o.latency().maxNanos() / 1e9));
+            metric(text, "lab6_operation_pixels_total", "counter", "Przetworzone piksele",
+                    operations, o -> String.valueOf(o.pixels()));
+            metric(text, "lab6_operation_megapixels_per_second", "gauge", "Średnia przepustowość operacji",
+                    operations, o -> number(o.megapixelsPerSecond()));
+            poolMetric(text, "lab6_pool_threads", "Liczba wątków puli", pools, pool -> String.valueOf(pool.threads()));
+            poolMetric(text, "lab6_pool_active_threads", "Zajęte wątki puli", pools, pool -> String.valueOf(pool.active()));
+            poolMetric(text, "lab6_pool_queued_tasks", "Zadania w kolejce puli", pools, pool -> String.valueOf(pool.queued()));
+            poolMetric(text, "lab6_pool_utilisation", "Zajętość puli (0-1)", pools, pool -> number(pool.utilisation()));
+            counters.forEach((counter, value) -> {
+                String name = "lab6_" + counter + "_total";
+                text.append("# HELP ").append(name).append(" Liczba zdarzeń ").append(counter).append('\n');
+                text.append("# TYPE ").append(name).append(" counter\n");
+                text.append(name).append(' ').append(value).append('\n');
+            });
+            return text.toString();
+        }
+
+        private static void poolMetric(StringBuilder text, String name, String help, List<PoolSnapshot> pools,
+                                       Function<PoolSnapshot, String> value) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(name).append(" gauge\n");
+            for (PoolSnapshot pool : pools) {
+                text.append(name).append("{pool=\"").append(labelValue(pool.name())).append("\"} ")
+                        .append(value.apply(pool)).append('\n');
+            }
+        }
+
+        private static void metric(StringBuilder text, String name, String type, String help, List<OperationSnapshot> operations,
+                                   Function<OperationSnapshot, String> value) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            for (OperationSnapshot operation : operations) {
+                text.append(name).append("{operation=\"").append(labelValue(operation.name())).append("\"} ")
+                        .append(value.apply(operation)).append('\n');
+            }
+        }
+    }
+
+    public Snapshot snapshot() {
+        List<OperationSnapshot> operationSnapshots = new ArrayList<>();
+        operations.forEach((name, stats) -> operationSnapshots.add(
+                new OperationSnapshot(name, stats.latency.snapshot(), stats.pixels.sum())));
+        operationSnapshots.sort(Comparator.comparing(OperationSnapshot::name));
+
+        List<PoolSnapshot> poolSnapshots = new ArrayList<>();
+        pools.forEach((name, pool) -> {
+            PoolSnapshot snapshot = poolSnapshot(name, pool);
+            if (snapshot != null) {
+                poolSnapshots.add(snapshot);
+            }
+        });
+        poolSnapshots.sort(Comparator.comparing(PoolSnapshot::name));
+
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+        return new Snapshot(Instant.now(), operationSnapshots, poolSnapshots, counterValues);
+    }
+
+    private static PoolSnapshot poolSnapshot(String name, ExecutorService pool) {
+        return switch (pool) {
+            case ForkJoinPool forkJoin -> new PoolSnapshot(name, forkJoin.getParallelism(), forkJoin.getActiveThreadCount(),
+                    forkJoin.getQueuedTaskCount() + forkJoin.getQueuedSubmissionCount());
+            case ThreadPoolExecutor executor -> new PoolSnapshot(name, executor.getMaximumPoolSize(), executor.getActiveCount(),
+                    executor.getQueue().size());
+            default -> null;
+        };
+    }
+
+    // Zapis stanu do pliku: *.json jako JSON, pozostałe w formacie tekstowym Prometheusa. Plik podmieniany jest
+    // w całości (zapis do pliku tymczasowego i przeniesienie), więc czytający nie zobaczy połowy zawartości.
+    public void writeTo(Path file) throws IOException {
+        Snapshot snapshot = snapshot();
+        String content = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")
+                ? snapshot.toJson() : snapshot.toPrometheus();
+        Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temporary, content, StandardCharsets.UTF_8);
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Zapis co interval w wątku w tle i ostatni raz przy zamykaniu JVM
+    public void exportPeriodically(Path file, Duration interval) {
+        ScheduledExecutorService exporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metryki");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, interval.toMillis());
+        exporter.scheduleAtFixedRate(() -> export(file), millis, millis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            exporter.shutdownNow();
+            export(file);
+        }, "metryki-koniec"));
+    }
+
+    // Eksport włączany właściwością -Dlab6.metrics-file=<plik> (co -Dlab6.metrics-interval-s sekund, domyślnie 10)
+    public static void exportFromSystemProperties() {
+        String file = System.getProperty("lab6.metrics-file");
+        if (file != null && !file.isBlank()) {
+            global().exportPeriodically(Path.of(file), Duration.ofSeconds(Long.getLong("lab6.metrics-interval-s", 10)));
+        }
+    }
+
+    private void export(Path file) {
+        try {
+            writeTo(file);
+        } catch (IOException | UncheckedIOException e) {
+            logger.log(Level.WARNING, "Nie udało się zapisać metryk do " + file, e);
+        }
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.6g", value) : "0";
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String labelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
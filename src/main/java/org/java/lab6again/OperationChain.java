@@ -0,0 +1,59 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Łańcuch operacji w postaci "threshold:128,edges,rotate:90,scale:1024x768"
+public record OperationChain(List<ImageOperation> operations) {
+
+    public OperationChain {
+        operations = List.copyOf(operations);
+    }
+
+    public static OperationChain parse(String spec) {
+        List<ImageOperation> operations = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            if (!part.isBlank()) {
+                operations.add(ImageOperation.parse(part));
+            }
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("Nie podano żadnej operacji");
+        }
+        return new OperationChain(operations);
+    }
+
+    public static OperationChain empty() {
+        return new OperationChain(List.of());
+    }
+
+    public OperationChain then(ImageOperation operation) {
+        List<ImageOperation> extended = new ArrayList<>(operations);
+        extended.add(operation);
+        return new OperationChain(extended);
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public boolean startsWith(OperationChain prefix) {
+        return prefix.operations.size() <= operations.size()
+                && operations.subList(0, prefix.operations.size()).equals(prefix.operations);
+    }
+
+    // Wykonanie w postaci potoku z połączonymi etapami; obraz wejściowy pozostaje bez zmian
+    public BufferedImage apply(BufferedImage image) {
+        return apply(image, TileScheduler.shared(), false);
+    }
+
+    public BufferedImage apply(BufferedImage image, TileScheduler scheduler, boolean inPlace) {
+        return FusedPipeline.compile(operations).apply(image, scheduler, inPlace);
+    }
+
+    public String spec() {
+        return operations.stream().map(ImageOperation::spec).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,27 @@
+package org.java.lab6again;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Zdarzenie JFR dla każdego etapu filtrów oraz dekodowania i zapisu pliku; widoczne w nagraniu
+// (java -XX:StartFlightRecording ...) razem z wątkiem i czasem trwania. Bez nagrywania koszt jest pomijalny.
+@Name("org.java.lab6again.Operation")
+@Label("Operacja na obrazie")
+@Category({"Lab6", "Przetwarzanie obrazów"})
+@Description("Etap filtrów albo dekodowanie/zapis pliku")
+@StackTrace(false)
+final class OperationEvent extends Event {
+
+    @Label("Operacja")
+    String operation;
+
+    @Label("Szerokość")
+    int width;
+
+    @Label("Wysokość")
+    int height;
+}
@@ -0,0 +1,60 @@
+package org.java.lab6again;
+
+// Jedno z 8 ułożeń obrazu (obroty o 90 stopni i odbicia): najpierw opcjonalne odbicie w poziomie,
+// potem obrót w prawo o quarterTurns * 90 stopni. Dowolny ciąg obrotów i odbić składa się w jedno ułożenie.
+public record Orientation(int quarterTurns, boolean mirrored) {
+
+    public static final Orientation IDENTITY = new Orientation(0, false);
+
+    // kolejność jak w znaczniku EXIF Orientation (1-8) - indeks = wartość - 1
+    private static final Orientation[] EXIF = {
+            new Orientation(0, false), new Orientation(0, true), new Orientation(2, false), new Orientation(2, true),
+            new Orientation(3, true), new Orientation(1, false), new Orientation(1, true), new Orientation(3, false)
+    };
+
+    public Orientation {
+        quarterTurns = Math.floorMod(quarterTurns, 4);
+    }
+
+    public static Orientation rotation(int angle) {
+        return new Orientation(angle / 90, false);
+    }
+
+    public static Orientation flip(boolean horizontal) {
+        // odbicie w pionie = odbicie w poziomie i obrót o 180 stopni
+        return new Orientation(horizontal ? 0 : 2, true);
+    }
+
+    // Ułożenie po wykonaniu najpierw this, a potem next
+    public Orientation then(Orientation next) {
+        if (!next.mirrored) {
+            return new Orientation(quarterTurns + next.quarterTurns, mirrored);
+        }
+        // odbicie po obrocie = obrót w przeciwną stronę po odbiciu
+        return new Orientation(next.quarterTurns - quarterTurns, !mirrored);
+    }
+
+    public boolean swapsDimensions() {
+        return quarterTurns % 2 == 1;
+    }
+
+    public boolean isIdentity() {
+        return quarterTurns == 0 && !mirrored;
+    }
+
+    public static Orientation fromExif(int value) {
+        if (value < 1 || value > 8) {
+            throw new IllegalArgumentException("Niepoprawna wartość EXIF Orientation: " + value);
+        }
+        return EXIF[value - 1];
+    }
+
+    public int exifValue() {
+        for (int i = 0; i < EXIF.length; i++) {
+            if (EXIF[i].equals(this)) {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,123 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Bufor pikseli 0xAARRGGBB poza stertą - w pamięci natywnej albo w pliku tymczasowym zmapowanym do pamięci.
+// Pojemność jest stała, a wymiary logiczne można zmieniać, żeby ten sam bufor obsłużył kolejne obrazy.
+public final class PixelBuffer implements AutoCloseable {
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final Path file;
+    private int width;
+    private int height;
+
+    private PixelBuffer(Arena arena, MemorySegment segment, Path file) {
+        this.arena = arena;
+        this.segment = segment;
+        this.file = file;
+    }
+
+    public static PixelBuffer allocate(long capacity) {
+        Arena arena = Arena.ofShared();
+        return new PixelBuffer(arena, arena.allocate(capacity * Integer.BYTES, 64), null);
+    }
+
+    // Kopia robocza w pliku tymczasowym - strony trafiają na dysk zamiast obciążać stertę i RSS
+    public static PixelBuffer mapped(long capacity, Path directory) throws IOException {
+        Path file = Files.createTempFile(directory, "piksele-", ".raw");
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity * Integer.BYTES, arena);
+            return new PixelBuffer(arena, segment, file);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    public long capacity() {
+        return segment.byteSize() / Integer.BYTES;
+    }
+
+    public boolean isMapped() {
+        return file != null;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int length() {
+        return width * height;
+    }
+
+    public void resize(int width, int height) {
+        if ((long) width * height > capacity()) {
+            throw new IllegalArgumentException("Obraz " + width + "x" + height + " nie mieści się w buforze");
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public void read(long index, int[] dst, int offset, int count) {
+        MemorySegment.copy(segment, ValueLayout.JAVA_INT, index * Integer.BYTES, dst, offset, count);
+    }
+
+    public void write(long index, int[] src, int offset, int count) {
+        MemorySegment.copy(src, offset, segment, ValueLayout.JAVA_INT, index * Integer.BYTES, count);
+    }
+
+    // Kopiuje piksele obrazu i ustawia wymiary bufora; obrazy typu INT jednym blokiem, pozostałe wiersz po wierszu
+    public void copyFrom(BufferedImage image) {
+        resize(image.getWidth(), image.getHeight());
+        if (IntImages.isPackedInt(image)) {
+            int[] pixels = IntImages.pixels(image);
+            write(0, pixels, 0, pixels.length);
+            return;
+        }
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            write((long) y * width, row, 0, width);
+        }
+    }
+
+    // Zapisuje piksele z powrotem do obrazu o tych samych wymiarach (dowolnego typu)
+    public void copyTo(BufferedImage image) {
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Niezgodne wymiary obrazu i bufora");
+        }
+        if (IntImages.isPackedInt(image)) {
+            int[] pixels = IntImages.pixels(image);
+            read(0, pixels, 0, pixels.length);
+            return;
+        }
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            read((long) y * width, row, 0, width);
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        arena.close();
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
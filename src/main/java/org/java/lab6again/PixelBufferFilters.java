@@ -0,0 +1,112 @@
+package org.java.lab6again;
+
+import org.java.lab6again.ImageOperation.PointOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Filtry na buforach poza stertą. Każdy wątek kopiuje fragment do własnej, wielokrotnie używanej tablicy,
+// przepuszcza go przez zwykłe jądra z PixelKernels i zapisuje z powrotem - bez nowych obiektów na obraz.
+public final class PixelBufferFilters {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private PixelBufferFilters() {
+    }
+
+    private static final class Scratch {
+        private int[] in = new int[0];
+        private int[] out = new int[0];
+
+        int[] in(int length) {
+            if (in.length < length) in = new int[length];
+            return in;
+        }
+
+        int[] out(int length) {
+            if (out.length < length) out = new int[length];
+            return out;
+        }
+    }
+
+    // Obsługiwane są operacje punktowe i filtry sąsiedztwa - obrót i skalowanie zmieniają układ pikseli
+    public static boolean supports(OperationChain chain) {
+        return chain.operations().stream().noneMatch(op -> op instanceof ImageOperation.GeometricOperation);
+    }
+
+    // Wykonuje łańcuch na buforze; scratch jest drugim buforem dla filtrów sąsiedztwa.
+    // Zwraca ten z dwóch buforów, w którym jest wynik.
+    public static PixelBuffer apply(OperationChain chain, PixelBuffer buffer, PixelBuffer scratch, TileScheduler scheduler) {
+        PixelBuffer current = buffer;
+        PixelBuffer spare = scratch;
+        List<ImageOperation> operations = chain.operations();
+        int i = 0;
+        while (i < operations.size()) {
+            ImageOperation operation = operations.get(i);
+            if (operation instanceof PointOperation) {
+                List<PointOperation> group = new ArrayList<>();
+                while (i < operations.size() && operations.get(i) instanceof PointOperation point) {
+                    group.add(point);
+                    i++;
+                }
+                Metrics.Sample sample = Metrics.global().start(FusedPipeline.name(group));
+                pointPass(current, group, scheduler);
+                sample.stop(current.width(), current.height());
+            } else if (operation instanceof ImageOperation.NeighbourhoodOperation neighbourhood) {
+                Metrics.Sample sample = Metrics.global().start(neighbourhood.name());
+                neighbourhood(current, spare, neighbourhood, scheduler);
+                sample.stop(current.width(), current.height());
+                PixelBuffer tmp = current;
+                current = spare;
+                spare = tmp;
+                i++;
+            } else {
+                throw new IllegalArgumentException("Operacja '" + operation.spec() + "' nie działa na buforach poza stertą");
+            }
+        }
+        return current;
+    }
+
+    // Kolejne operacje punktowe w jednym przebiegu, w miejscu - kilka operacji jako jedna złożona tablica
+    public static void pointPass(PixelBuffer buffer, List<PointOperation> operations, TileScheduler scheduler) {
+        PointOperation single = operations.size() == 1 && operations.get(0).hasKernel() ? operations.get(0) : null;
+        PointLut lut = single == null ? PointLut.compose(operations) : null;
+        scheduler.forEachSpan(buffer.length(), (from, to) -> {
+            int count = to - from;
+            int[] pixels = SCRATCH.get().in(count);
+            buffer.read(from, pixels, 0, count);
+            if (single != null) {
+                single.applyPixels(pixels, pixels, 0, count);
+            } else {
+                lut.apply(pixels, pixels, 0, count);
+            }
+            buffer.write(from, pixels, 0, count);
+        });
+    }
+
+    // Filtr sąsiedztwa src -> dst; kafelek kopiowany jest z marginesem radius() pikseli, więc szwy są liczone
+    // poprawnie, a na brzegach obrazu brzeg kopii jest brzegiem obrazu
+    public static void neighbourhood(PixelBuffer src, PixelBuffer dst, ImageOperation.NeighbourhoodOperation operation,
+                                     TileScheduler scheduler) {
+        int width = src.width();
+        int height = src.height();
+        dst.resize(width, height);
+        scheduler.forEachTile(width, height, operation.radius(), tile -> {
+            int readWidth = tile.readX1() - tile.readX0();
+            int readHeight = tile.readY1() - tile.readY0();
+            Scratch scratch = SCRATCH.get();
+            int[] in = scratch.in(readWidth * readHeight);
+            int[] out = scratch.out(readWidth * readHeight);
+            for (int y = 0; y < readHeight; y++) {
+                src.read((long) (tile.readY0() + y) * width + tile.readX0(), in, y * readWidth, readWidth);
+            }
+            int offsetX = tile.x0() - tile.readX0();
+            int offsetY = tile.y0() - tile.readY0();
+            int tileWidth = tile.x1() - tile.x0();
+            operation.applyTile(in, out, readWidth, readHeight, offsetX, offsetY, offsetX + tileWidth, offsetY + tile.y1() - tile.y0());
+            for (int y = tile.y0(); y < tile.y1(); y++) {
+                dst.write((long) y * width + tile.x0(), out, (y - tile.readY0()) * readWidth + offsetX, tileWidth);
+            }
+        });
+    }
+}
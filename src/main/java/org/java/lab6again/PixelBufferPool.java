@@ -0,0 +1,83 @@
+package org.java.lab6again;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Pula buforów pikseli wielokrotnego użytku - kolejne obrazy z kolejki korzystają z tej samej pamięci,
+// zamiast alokować nowe kopie robocze (stałe RSS, brak pracy dla GC)
+public final class PixelBufferPool implements AutoCloseable {
+
+    private final Path scratchDirectory;
+    private final int maxIdle;
+    private final List<PixelBuffer> idle = new ArrayList<>();
+
+    // scratchDirectory == null - pamięć natywna, w przeciwnym razie pliki zmapowane w tym katalogu
+    public PixelBufferPool(Path scratchDirectory, int maxIdle) {
+        this.scratchDirectory = scratchDirectory;
+        this.maxIdle = maxIdle;
+    }
+
+    public PixelBuffer acquire(int width, int height) {
+        long needed = (long) width * height;
+        synchronized (this) {
+            // najmniejszy wolny bufor, w którym zmieści się obraz
+            PixelBuffer best = null;
+            for (PixelBuffer buffer : idle) {
+                if (buffer.capacity() >= needed && (best == null || buffer.capacity() < best.capacity())) {
+                    best = buffer;
+                }
+            }
+            if (best != null) {
+                idle.remove(best);
+                best.resize(width, height);
+                return best;
+            }
+        }
+        try {
+            PixelBuffer buffer = scratchDirectory == null
+                    ? PixelBuffer.allocate(needed)
+                    : PixelBuffer.mapped(needed, scratchDirectory);
+            buffer.resize(width, height);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void release(PixelBuffer buffer) {
+        PixelBuffer evicted = null;
+        synchronized (this) {
+            idle.add(buffer);
+            if (idle.size() > maxIdle) {
+                // zwalniamy najmniejszy - duże bufory częściej się przydają
+                evicted = idle.get(0);
+                for (PixelBuffer candidate : idle) {
+                    if (candidate.capacity() < evicted.capacity()) evicted = candidate;
+                }
+                idle.remove(evicted);
+            }
+        }
+        if (evicted != null) {
+            closeQuietly(evicted);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (PixelBuffer buffer : idle) {
+            closeQuietly(buffer);
+        }
+        idle.clear();
+    }
+
+    private static void closeQuietly(PixelBuffer buffer) {
+        try {
+            buffer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.java.lab6again;
+
+// Jądra filtrów działające bezpośrednio na tablicach pikseli 0xAARRGGBB (wiersz po wierszu, szerokość = width).
+// Gdy JVM uruchomiono z --add-modules jdk.incubator.vector, pętle wykonują wersje SIMD z VectorKernels;
+// -Dlab6.simd=false wymusza kod skalarny (np. do porównań w benchmarkach).
+public final class PixelKernels {
+
+    static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !"false".equals(System.getProperty("lab6.simd"));
+
+    // bok bloku transpozycji: 32 x 32 int = 4 KB odczytu i 32 linie pamięci podręcznej zapisu
+    private static final int BLOCK = 32;
+
+    private PixelKernels() {
+    }
+
+    public static boolean isVectorized() {
+        return SIMD;
+    }
+
+    // Negatyw pikseli [from, to) - odwrócenie kanałów RGB z zachowaniem alfy
+    public static void negative(int[] src, int[] dst, int from, int to) {
+        if (SIMD) {
+            VectorKernels.negative(src, dst, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            dst[i] = src[i] ^ 0x00ffffff;
+        }
+    }
+
+    // Progowanie pikseli [from, to); (r + g + b) / 3 < level  <=>  r + g + b < 3 * level
+    public static void threshold(int[] src, int[] dst, int from, int to, int level) {
+        if (SIMD) {
+            VectorKernels.threshold(src, dst, from, to, level);
+            return;
+        }
+        int limit = 3 * level;
+        for (int i = from; i < to; i++) {
+            int p = src[i];
+            int sum = ((p >> 16) & 0xff) + ((p >> 8) & 0xff) + (p & 0xff);
+            dst[i] = sum < limit ? 0xff000000 : 0xffffffff;
+        }
+    }
+
+    // Skala szarości pikseli [from, to) - średnia kanałów RGB, z zachowaniem alfy
+    public static void grayscale(int[] src, int[] dst, int from, int to) {
+        if (SIMD) {
+            VectorKernels.grayscale(src, dst, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            int p = src[i];
+            int gray = (((p >> 16) & 0xff) + ((p >> 8) & 0xff) + (p & 0xff)) / 3;
+            dst[i] = (p & 0xff000000) | (gray << 16) | (gray << 8) | gray;
+        }
+    }
+
+    // Jasność (r + g + b) / 3 pikseli src[offset ..] do gray[grayOffset ..], length wartości
+    static void grayRow(int[] src, int offset, int[] gray, int grayOffset, int length) {
+        if (SIMD) {
+            VectorKernels.grayRow(src, offset, gray, grayOffset, length);
+            return;
+        }
+        for (int x = 0; x < length; x++) {
+            int p = src[offset + x];
+            gray[grayOffset + x] = (((p >> 16) & 0xff) + ((p >> 8) & 0xff) + (p & 0xff)) / 3;
+        }
+    }
+
+    // Wiersz modułu gradientu |gx| + |gy| z bufora wierszy Convolution: różnice poziome trzech kolejnych wierszy
+    // (gx = side * (góra + dół) + center * środek) i wygładzenia poziome wiersza wyżej i niżej (gy = dół - góra)
+    static void gradientMagnitude(int[] ring, int top, int middle, int bottom, int smoothedTop, int smoothedBottom,
+                                  int side, int center, int shift, int[] dst, int offset, int count) {
+        if (SIMD) {
+            VectorKernels.gradientMagnitude(ring, top, middle, bottom, smoothedTop, smoothedBottom,
+                    side, center, shift, dst, offset, count);
+            return;
+        }
+        for (int x = 0; x < count; x++) {
+            int gx = side * (ring[top + x] + ring[bottom + x]) + center * ring[middle + x];
+            int gy = ring[smoothedBottom + x] - ring[smoothedTop + x];
+            int magnitude = Math.min(255, (Math.abs(gx) + Math.abs(gy)) >> shift);
+            dst[offset + x] = 0xff000000 | (magnitude << 16) | (magnitude << 8) | magnitude;
+        }
+    }
+
+    // Przestawienie fragmentu [x0, x1) x [y0, y1) obrazu width x height do obrazu height x width, wiersze źródła
+    // stają się kolumnami wyniku; reverseRows/reverseColumns odwracają kolejność - obroty o 90 stopni i ich odbicia.
+    // Fragment przetwarzany jest blokami BLOCK x BLOCK, żeby zapis kolumnami nie wypychał danych z pamięci podręcznej.
+    public static void transpose(int[] src, int[] dst, int width, int height, boolean reverseRows, boolean reverseColumns,
+                                 int x0, int y0, int x1, int y1) {
+        for (int blockY = y0; blockY < y1; blockY += BLOCK) {
+            int endY = Math.min(y1, blockY + BLOCK);
+            for (int blockX = x0; blockX < x1; blockX += BLOCK) {
+                int endX = Math.min(x1, blockX + BLOCK);
+                for (int y = blockY; y < endY; y++) {
+                    int dstX = reverseRows ? height - 1 - y : y;
+                    int srcOffset = y * width;
+                    for (int x = blockX; x < endX; x++) {
+                        int dstY = reverseColumns ? width - 1 - x : x;
+                        dst[dstY * height + dstX] = src[srcOffset + x];
+                    }
+                }
+            }
+        }
+    }
+
+    // Obrót o 180 stopni pikseli [from, to) z length; przy src == dst zamienia parami, więc wystarczy pierwsza połowa
+    public static void reverse(int[] src, int[] dst, int length, int from, int to) {
+        int last = length - 1;
+        if (src == dst) {
+            for (int i = from; i < to; i++) {
+                int tmp = src[i];
+                src[i] = src[last - i];
+                src[last - i] = tmp;
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                dst[last - i] = src[i];
+            }
+        }
+    }
+
+    // Odbicie w poziomie wierszy [y0, y1); src == dst - w miejscu
+    public static void mirrorRows(int[] src, int[] dst, int width, int y0, int y1) {
+        for (int y = y0; y < y1; y++) {
+            int offset = y * width;
+            if (src == dst) {
+                for (int left = offset, right = offset + width - 1; left < right; left++, right--) {
+                    int tmp = src[left];
+                    src[left] = src[right];
+                    src[right] = tmp;
+                }
+            } else {
+                for (int x = 0; x < width; x++) {
+                    dst[offset + width - 1 - x] = src[offset + x];
+                }
+            }
+        }
+    }
+
+    // Odbicie w pionie wierszy [y0, y1); przy src == dst zamienia wiersze parami, więc wystarczy górna połowa
+    public static void flipRows(int[] src, int[] dst, int width, int height, int y0, int y1) {
+        int[] row = src == dst ? new int[width] : null;
+        for (int y = y0; y < y1; y++) {
+            int top = y * width;
+            int bottom = (height - 1 - y) * width;
+            if (row != null) {
+                System.arraycopy(src, top, row, 0, width);
+                System.arraycopy(src, bottom, src, top, width);
+                System.arraycopy(row, 0, src, bottom, width);
+            } else {
+                System.arraycopy(src, top, dst, bottom, width);
+            }
+        }
+    }
+}
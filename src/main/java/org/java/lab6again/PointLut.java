@@ -0,0 +1,145 @@
+package org.java.lab6again;
+
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+// Operacja punktowa zapisana jako tablice przekodowań, wykonywana jednym przejściem po pikselach.
+// Dwie postaci:
+//  - na kanałach: każdy kanał RGB przez własną tablicę 256 wartości (negatyw, gamma, jasność, poziomy),
+//  - przez jasność: kanały przez tablice wstępne, ich suma (0-765) wybiera gotowy kolor z tablicy 766 wartości
+//    (skala szarości, progowanie - jasność to (r + g + b) / 3 jak w PixelKernels, bez dzielenia przy pikselu).
+// Złożenie dwóch tablic jest znowu jedną z tych postaci, więc dowolny ciąg operacji punktowych to jedna tablica.
+public final class PointLut {
+
+    private static final int SUMS = 3 * 255 + 1;
+
+    // wartości 0-255 dla kanałów (w postaci przez jasność - tablice wstępne)
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+    // kolor 0x00RRGGBB dla sumy kanałów albo null w postaci na kanałach
+    private final int[] mixed;
+    // wynik zawsze nieprzezroczysty (jak przy progowaniu), w przeciwnym razie alfa bez zmian
+    private final boolean opaque;
+
+    // tablice przesunięte na miejsce kanału w pikselu - przy pikselu zostają tylko odczyty i OR
+    private final int[] redShifted;
+    private final int[] greenShifted;
+
+    private PointLut(int[] red, int[] green, int[] blue, int[] mixed, boolean opaque) {
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+        this.mixed = mixed;
+        this.opaque = opaque;
+        if (mixed == null) {
+            redShifted = new int[256];
+            greenShifted = new int[256];
+            for (int v = 0; v < 256; v++) {
+                redShifted[v] = red[v] << 16;
+                greenShifted[v] = green[v] << 8;
+            }
+        } else {
+            redShifted = null;
+            greenShifted = null;
+        }
+    }
+
+    public static PointLut identity() {
+        return channels(v -> v);
+    }
+
+    // Ta sama funkcja dla każdego kanału; wyniki przycinane do 0-255
+    public static PointLut channels(IntUnaryOperator function) {
+        int[] table = table(256, function);
+        return new PointLut(table, table, table, null, false);
+    }
+
+    // Kolor zależny tylko od jasności (r + g + b) / 3: szarość o wartości function(jasność)
+    public static PointLut luminance(IntUnaryOperator function, boolean opaque) {
+        int[] identity = table(256, v -> v);
+        int[] mixed = new int[SUMS];
+        for (int s = 0; s < SUMS; s++) {
+            int gray = clamp(function.applyAsInt(s / 3));
+            mixed[s] = (gray << 16) | (gray << 8) | gray;
+        }
+        return new PointLut(identity, identity, identity, mixed, opaque);
+    }
+
+    // Jedna tablica dla kolejnych operacji; pusta lista daje tablicę tożsamościową
+    public static PointLut compose(List<? extends ImageOperation.PointOperation> operations) {
+        PointLut result = null;
+        for (ImageOperation.PointOperation operation : operations) {
+            result = result == null ? operation.lut() : result.then(operation.lut());
+        }
+        return result == null ? identity() : result;
+    }
+
+    // Najpierw this, potem next
+    public PointLut then(PointLut next) {
+        boolean resultOpaque = opaque || next.opaque;
+        if (mixed == null) {
+            // kanały this wchodzą w tablice (wstępne) next
+            return new PointLut(compose(red, next.red), compose(green, next.green), compose(blue, next.blue),
+                    next.mixed, resultOpaque);
+        }
+        // wynik this to gotowy kolor dla każdej sumy - wystarczy przepuścić przez next 766 kolorów
+        int[] result = new int[SUMS];
+        for (int s = 0; s < SUMS; s++) {
+            result[s] = next.map(mixed[s]) & 0x00ffffff;
+        }
+        return new PointLut(red, green, blue, result, resultOpaque);
+    }
+
+    public boolean isOpaque() {
+        return opaque;
+    }
+
+    // Piksele [from, to) z src do dst (może to być ta sama tablica)
+    public void apply(int[] src, int[] dst, int from, int to) {
+        int alphaSet = opaque ? 0xff000000 : 0;
+        int alphaKeep = opaque ? 0 : 0xff000000;
+        if (mixed == null) {
+            for (int i = from; i < to; i++) {
+                int p = src[i];
+                dst[i] = (p & alphaKeep) | alphaSet
+                        | redShifted[(p >> 16) & 0xff] | greenShifted[(p >> 8) & 0xff] | blue[p & 0xff];
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                int p = src[i];
+                dst[i] = (p & alphaKeep) | alphaSet
+                        | mixed[red[(p >> 16) & 0xff] + green[(p >> 8) & 0xff] + blue[p & 0xff]];
+            }
+        }
+    }
+
+    // Jeden piksel 0xAARRGGBB
+    public int map(int p) {
+        int alpha = opaque ? 0xff000000 : p & 0xff000000;
+        int r = red[(p >> 16) & 0xff];
+        int g = green[(p >> 8) & 0xff];
+        int b = blue[p & 0xff];
+        return alpha | (mixed == null ? (r << 16) | (g << 8) | b : mixed[r + g + b]);
+    }
+
+    private static int[] table(int size, IntUnaryOperator function) {
+        int[] table = new int[size];
+        for (int v = 0; v < size; v++) {
+            table[v] = clamp(function.applyAsInt(v));
+        }
+        return table;
+    }
+
+    private static int[] compose(int[] first, int[] second) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = second[first[v]];
+        }
+        return table;
+    }
+
+    static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(255, value);
+    }
+}
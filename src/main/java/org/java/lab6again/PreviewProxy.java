@@ -0,0 +1,68 @@
+package org.java.lab6again;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+
+// Podgląd na pomniejszonej kopii obrazu (wielkości widoku na ekranie): operacje wykonują się na niej w kilka
+// milisekund, a wynik w pełnej rozdzielczości liczony jest osobno w tle. Skalowanie do zadanego rozmiaru
+// i promień rozmycia są na kopii przeliczane proporcjonalnie, pozostałe operacje działają bez zmian.
+public final class PreviewProxy {
+
+    private PreviewProxy() {
+    }
+
+    // Kopia o szerokości co najwyżej maxWidth (mniejszych obrazów nie powiększamy)
+    public static BufferedImage create(BufferedImage image, int maxWidth, TileScheduler scheduler) {
+        if (image.getWidth() <= maxWidth) {
+            return IntImages.toIntImage(image);
+        }
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * maxWidth / image.getWidth()));
+        return Resampler.resize(image, maxWidth, height, Resampler.Filter.BILINEAR, scheduler);
+    }
+
+    // Operacja na kopii; fullWidth - szerokość obrazu w pełnej rozdzielczości, którego kopią jest proxy
+    public static BufferedImage apply(ImageOperation operation, BufferedImage proxy, int fullWidth, TileScheduler scheduler) {
+        double factor = (double) proxy.getWidth() / fullWidth;
+        return OperationChain.empty().then(forProxy(operation, factor)).apply(proxy, scheduler, false);
+    }
+
+    // Cały łańcuch od kopii obrazu źródłowego o pełnym rozmiarze fullSize
+    public static BufferedImage render(OperationChain chain, BufferedImage proxy, Dimension fullSize, TileScheduler scheduler) {
+        BufferedImage image = proxy;
+        Dimension size = fullSize;
+        for (ImageOperation operation : chain.operations()) {
+            image = apply(operation, image, size.width, scheduler);
+            size = resultSize(operation, size);
+        }
+        return image;
+    }
+
+    // Wymiary i promienie podane w pikselach obrazu przeliczone na piksele kopii
+    static ImageOperation forProxy(ImageOperation operation, double factor) {
+        return switch (operation) {
+            case ImageOperation.Scale scale -> new ImageOperation.Scale(Math.max(1, (int) Math.round(scale.width() * factor)),
+                    Math.max(1, (int) Math.round(scale.height() * factor)), scale.filter());
+            case ImageOperation.GaussianBlur blur -> new ImageOperation.GaussianBlur(Math.max(0.01, blur.sigma() * factor));
+            case ImageOperation.BoxBlur box -> new ImageOperation.BoxBlur(Math.max(1, (int) Math.round(box.radius() * factor)));
+            default -> operation;
+        };
+    }
+
+    // Wymiary wyniku bez liczenia pikseli
+    public static Dimension resultSize(ImageOperation operation, Dimension size) {
+        return switch (operation) {
+            case ImageOperation.Scale scale -> new Dimension(scale.width(), scale.height());
+            case ImageOperation.Rotate rotate ->
+                    rotate.orientation().swapsDimensions() ? new Dimension(size.height, size.width) : size;
+            default -> size;
+        };
+    }
+
+    public static Dimension resultSize(OperationChain chain, Dimension size) {
+        Dimension result = size;
+        for (ImageOperation operation : chain.operations()) {
+            result = resultSize(operation, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,324 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Skalowanie filtrem rozdzielnym: najpierw w poziomie (wiersze), potem w pionie (kolumny).
+// Wagi filtru dla każdej kolumny i wiersza wyniku liczone są raz, a oba przebiegi idą kafelkami przez TileScheduler.
+// Przy dużym pomniejszeniu obraz jest najpierw zmniejszany o połowę (średnia 2x2), dopóki jest co najmniej
+// 4 razy większy od docelowego - filtr działa dopiero na ostatnim kroku, na znacznie mniejszym obrazie.
+// Obrazy z kanałem alfa skalowane są w postaci z przemnożoną alfą, żeby przezroczyste piksele nie barwiły krawędzi.
+public final class Resampler {
+
+    public enum Filter {
+        NEAREST("nearest", 0.5) {
+            @Override
+            double weight(double x) {
+                return 1;
+            }
+        },
+        BILINEAR("bilinear", 1) {
+            @Override
+            double weight(double x) {
+                return x < 1 ? 1 - x : 0;
+            }
+        },
+        // Catmull-Rom (a = -0.5)
+        BICUBIC("bicubic", 2) {
+            @Override
+            double weight(double x) {
+                double a = -0.5;
+                if (x < 1) {
+                    return ((a + 2) * x - (a + 3)) * x * x + 1;
+                }
+                if (x < 2) {
+                    return (((x - 5) * x + 8) * x - 4) * a;
+                }
+                return 0;
+            }
+        },
+        LANCZOS("lanczos", 3) {
+            @Override
+            double weight(double x) {
+                return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+            }
+        };
+
+        private final String key;
+        private final double support;
+
+        Filter(String key, double support) {
+            this.key = key;
+            this.support = support;
+        }
+
+        // x >= 0 - odległość od środka w pikselach źródła (po przeskalowaniu filtru)
+        abstract double weight(double x);
+
+        public String key() {
+            return key;
+        }
+
+        public static Filter parse(String key) {
+            String name = key.trim().toLowerCase(Locale.ROOT);
+            for (Filter filter : values()) {
+                if (filter.key.equals(name)) {
+                    return filter;
+                }
+            }
+            throw new IllegalArgumentException("Nieznana metoda skalowania: " + key);
+        }
+
+        private static double sinc(double x) {
+            if (x == 0) {
+                return 1;
+            }
+            double px = Math.PI * x;
+            return Math.sin(px) / px;
+        }
+    }
+
+    public static final Filter DEFAULT_FILTER = Filter.BICUBIC;
+
+    // wagi w postaci stałoprzecinkowej - 255 * suma |wag| * 2^20 mieści się w int także dla Lanczosa
+    private static final int PRECISION = 20;
+    private static final int ROUNDING = 1 << (PRECISION - 1);
+
+    private static final ThreadLocal<int[][]> ACCUMULATORS = ThreadLocal.withInitial(() -> new int[4][0]);
+
+    private Resampler() {
+    }
+
+    // Wagi dla jednego wymiaru: wynik i korzysta z count[i] pikseli źródła od start[i]
+    private record Weights(int[] start, int[] count, int taps, int[] values) {
+    }
+
+    public static BufferedImage resize(BufferedImage src, int width, int height, Filter filter, TileScheduler scheduler) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Wymiary muszą być dodatnie: " + width + "x" + height);
+        }
+        BufferedImage source = IntImages.toIntImage(src);
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        if (sourceWidth == width && sourceHeight == height) {
+            return source;
+        }
+        boolean alpha = IntImages.hasAlpha(source);
+        BufferedImage result = IntImages.create(width, height, alpha);
+        int[] out = IntImages.pixels(result);
+        if (filter == Filter.NEAREST) {
+            nearest(IntImages.pixels(source), sourceWidth, sourceHeight, out, width, height, scheduler);
+            return result;
+        }
+
+        int[] pixels = alpha ? premultiply(IntImages.pixels(source), scheduler) : IntImages.pixels(source);
+        while (sourceWidth / 2 >= width * 2 && sourceHeight / 2 >= height * 2) {
+            pixels = halve(pixels, sourceWidth, sourceHeight, alpha, scheduler);
+            sourceWidth /= 2;
+            sourceHeight /= 2;
+        }
+
+        int[] rows = pixels;
+        if (sourceWidth != width) {
+            rows = sourceHeight == height ? out : new int[width * sourceHeight];
+            horizontal(pixels, sourceWidth, rows, width, sourceHeight, weights(sourceWidth, width, filter), alpha, scheduler);
+        }
+        if (sourceHeight != height) {
+            vertical(rows, out, width, height, weights(sourceHeight, height, filter), alpha, scheduler);
+        } else if (rows != out) {
+            System.arraycopy(rows, 0, out, 0, out.length);
+        }
+        if (alpha) {
+            unpremultiply(out, scheduler);
+        }
+        return result;
+    }
+
+    static Weights weights(int sourceSize, int targetSize, Filter filter) {
+        double scale = (double) targetSize / sourceSize;
+        // przy pomniejszaniu filtr jest rozciągany, żeby uśredniał wszystkie piksele źródła
+        double filterScale = Math.max(1, 1 / scale);
+        double support = filter.support * filterScale;
+        int taps = (int) Math.ceil(support) * 2 + 1;
+        int[] start = new int[targetSize];
+        int[] count = new int[targetSize];
+        int[] values = new int[targetSize * taps];
+        double[] raw = new double[taps];
+        for (int i = 0; i < targetSize; i++) {
+            double center = (i + 0.5) / scale;
+            int from = Math.max(0, (int) (center - support + 0.5));
+            int to = Math.min(sourceSize, (int) (center + support + 0.5));
+            int n = Math.min(taps, to - from);
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                raw[k] = filter.weight(Math.abs(from + k + 0.5 - center) / filterScale);
+                sum += raw[k];
+            }
+            for (int k = 0; k < n; k++) {
+                values[i * taps + k] = (int) Math.round(raw[k] / (sum == 0 ? 1 : sum) * (1 << PRECISION));
+            }
+            start[i] = from;
+            count[i] = n;
+        }
+        return new Weights(start, count, taps, values);
+    }
+
+    private static void horizontal(int[] src, int sourceWidth, int[] dst, int width, int height, Weights weights,
+                                   boolean alpha, TileScheduler scheduler) {
+        int[] start = weights.start();
+        int[] count = weights.count();
+        int[] values = weights.values();
+        int taps = weights.taps();
+        scheduler.forEachTile(width, height, 0, tile -> {
+            for (int y = tile.y0(); y < tile.y1(); y++) {
+                int row = y * sourceWidth;
+                for (int x = tile.x0(); x < tile.x1(); x++) {
+                    int offset = row + start[x];
+                    int base = x * taps;
+                    int a = ROUNDING, r = ROUNDING, g = ROUNDING, b = ROUNDING;
+                    for (int k = 0; k < count[x]; k++) {
+                        int p = src[offset + k];
+                        int w = values[base + k];
+                        a += (p >>> 24) * w;
+                        r += ((p >> 16) & 0xff) * w;
+                        g += ((p >> 8) & 0xff) * w;
+                        b += (p & 0xff) * w;
+                    }
+                    dst[y * width + x] = pack(a, r, g, b, alpha);
+                }
+            }
+        });
+    }
+
+    private static void vertical(int[] src, int[] dst, int width, int height, Weights weights,
+                                 boolean alpha, TileScheduler scheduler) {
+        int[] start = weights.start();
+        int[] count = weights.count();
+        int[] values = weights.values();
+        int taps = weights.taps();
+        scheduler.forEachTile(width, height, 0, tile -> {
+            int tileWidth = tile.x1() - tile.x0();
+            int[][] acc = accumulators(tileWidth);
+            int[] a = acc[0], r = acc[1], g = acc[2], b = acc[3];
+            for (int y = tile.y0(); y < tile.y1(); y++) {
+                Arrays.fill(a, 0, tileWidth, ROUNDING);
+                Arrays.fill(r, 0, tileWidth, ROUNDING);
+                Arrays.fill(g, 0, tileWidth, ROUNDING);
+                Arrays.fill(b, 0, tileWidth, ROUNDING);
+                // wiersz po wierszu - ciągły odczyt pamięci zamiast skakania po kolumnach
+                for (int k = 0; k < count[y]; k++) {
+                    int w = values[y * taps + k];
+                    int offset = (start[y] + k) * width + tile.x0();
+                    for (int x = 0; x < tileWidth; x++) {
+                        int p = src[offset + x];
+                        a[x] += (p >>> 24) * w;
+                        r[x] += ((p >> 16) & 0xff) * w;
+                        g[x] += ((p >> 8) & 0xff) * w;
+                        b[x] += (p & 0xff) * w;
+                    }
+                }
+                int row = y * width + tile.x0();
+                for (int x = 0; x < tileWidth; x++) {
+                    dst[row + x] = pack(a[x], r[x], g[x], b[x], alpha);
+                }
+            }
+        });
+    }
+
+    private static int[][] accumulators(int length) {
+        int[][] acc = ACCUMULATORS.get();
+        if (acc[0].length < length) {
+            for (int c = 0; c < 4; c++) {
+                acc[c] = new int[length];
+            }
+        }
+        return acc;
+    }
+
+    // Bicubic i Lanczos mają ujemne wagi, więc wynik może wyjść poza 0-255
+    private static int pack(int a, int r, int g, int b, boolean alpha) {
+        int alphaBits = alpha ? clamp(a) << 24 : 0xff000000;
+        return alphaBits | (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+    }
+
+    private static int clamp(int value) {
+        int v = value >> PRECISION;
+        return v < 0 ? 0 : Math.min(v, 255);
+    }
+
+    // Pomniejszenie o połowę - średnia z bloków 2x2 (nieparzysty ostatni wiersz/kolumna jest pomijany)
+    private static int[] halve(int[] src, int sourceWidth, int sourceHeight, boolean alpha, TileScheduler scheduler) {
+        int width = sourceWidth / 2;
+        int height = sourceHeight / 2;
+        int[] dst = new int[width * height];
+        scheduler.forEachTile(width, height, 0, tile -> {
+            for (int y = tile.y0(); y < tile.y1(); y++) {
+                int top = 2 * y * sourceWidth;
+                int bottom = top + sourceWidth;
+                for (int x = tile.x0(); x < tile.x1(); x++) {
+                    int p0 = src[top + 2 * x];
+                    int p1 = src[top + 2 * x + 1];
+                    int p2 = src[bottom + 2 * x];
+                    int p3 = src[bottom + 2 * x + 1];
+                    int a = alpha ? average(p0, p1, p2, p3, 24) << 24 : 0xff000000;
+                    dst[y * width + x] = a | (average(p0, p1, p2, p3, 16) << 16)
+                            | (average(p0, p1, p2, p3, 8) << 8) | average(p0, p1, p2, p3, 0);
+                }
+            }
+        });
+        return dst;
+    }
+
+    private static int average(int p0, int p1, int p2, int p3, int shift) {
+        return (((p0 >>> shift) & 0xff) + ((p1 >>> shift) & 0xff) + ((p2 >>> shift) & 0xff) + ((p3 >>> shift) & 0xff) + 2) >> 2;
+    }
+
+    private static void nearest(int[] src, int sourceWidth, int sourceHeight, int[] dst, int width, int height,
+                                TileScheduler scheduler) {
+        int[] columns = new int[width];
+        for (int x = 0; x < width; x++) {
+            columns[x] = Math.min(sourceWidth - 1, (int) ((x + 0.5) * sourceWidth / width));
+        }
+        scheduler.forEachTile(width, height, 0, tile -> {
+            for (int y = tile.y0(); y < tile.y1(); y++) {
+                int row = Math.min(sourceHeight - 1, (int) ((y + 0.5) * sourceHeight / height)) * sourceWidth;
+                for (int x = tile.x0(); x < tile.x1(); x++) {
+                    dst[y * width + x] = src[row + columns[x]];
+                }
+            }
+        });
+    }
+
+    private static int[] premultiply(int[] src, TileScheduler scheduler) {
+        int[] dst = new int[src.length];
+        scheduler.forEachSpan(src.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int p = src[i];
+                int a = p >>> 24;
+                int r = (((p >> 16) & 0xff) * a + 127) / 255;
+                int g = (((p >> 8) & 0xff) * a + 127) / 255;
+                int b = ((p & 0xff) * a + 127) / 255;
+                dst[i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        });
+        return dst;
+    }
+
+    private static void unpremultiply(int[] pixels, TileScheduler scheduler) {
+        scheduler.forEachSpan(pixels.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int p = pixels[i];
+                int a = p >>> 24;
+                if (a == 0) {
+                    pixels[i] = 0;
+                } else if (a < 255) {
+                    int r = Math.min(255, (((p >> 16) & 0xff) * 255 + a / 2) / a);
+                    int g = Math.min(255, (((p >> 8) & 0xff) * 255 + a / 2) / a);
+                    int b = Math.min(255, ((p & 0xff) * 255 + a / 2) / a);
+                    pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,299 @@
+package org.java.lab6again;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Wyniki operacji adresowane treścią: kluczem jest skrót SHA-256 pliku źródłowego i łańcuch operacji z parametrami,
+// więc ten sam łańcuch na tym samym pliku (także skopiowanym albo otwartym po ponownym uruchomieniu) nie jest
+// liczony drugi raz. Dwa poziomy, oba z usuwaniem najdawniej używanych po przekroczeniu budżetu bajtów:
+// skompresowane kopie w pamięci i pliki w katalogu na dysku. Zapis na dysk idzie w osobnym wątku w tle, tak jak
+// przegląd katalogu przy utworzeniu - do jego końca zapisane wcześniej wyniki są po prostu nieznane.
+public final class ResultCache implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ResultCache.class.getName());
+    private static final String SUFFIX = ".wynik";
+
+    private final long memoryBudget;
+    private final long diskBudget;
+    // null - bez poziomu dyskowego
+    private final Path directory;
+    // katalog przejrzany i dostępny do zapisu; ustawiane w wątku zapisu
+    private volatile boolean diskReady;
+
+    private final Map<String, SnapshotCache.Snapshot> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryUsed;
+    // pliki na dysku: klucz -> rozmiar, od najdawniej używanego
+    private final Map<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskUsed;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "wyniki-zapis");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    public ResultCache(long memoryBudgetBytes, Path directory, long diskBudgetBytes) {
+        this.memoryBudget = memoryBudgetBytes;
+        this.diskBudget = diskBudgetBytes;
+        this.directory = directory;
+        if (directory != null) {
+            background(() -> diskReady = openDirectory());
+        }
+    }
+
+    // Katalog i budżety z właściwości -Dlab6.cache-dir (domyślnie ~/.lab6again/wyniki), -Dlab6.cache-memory-mb
+    // (domyślnie 128) i -Dlab6.cache-mb (domyślnie 1024; 0 wyłącza zapis na dysk)
+    public static ResultCache fromSystemProperties() {
+        String dir = System.getProperty("lab6.cache-dir");
+        Path directory = dir != null ? Path.of(dir) : Path.of(System.getProperty("user.home"), ".lab6again", "wyniki");
+        long diskBudget = Long.getLong("lab6.cache-mb", 1024) * 1024 * 1024;
+        return new ResultCache(Long.getLong("lab6.cache-memory-mb", 128) * 1024 * 1024,
+                diskBudget > 0 ? directory : null, diskBudget);
+    }
+
+    // Skrót zawartości pliku (SHA-256, szesnastkowo)
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public synchronized long memoryBytes() {
+        return memoryUsed;
+    }
+
+    public synchronized long diskBytes() {
+        return diskUsed;
+    }
+
+    synchronized boolean contains(String sourceHash, OperationChain chain) {
+        String key = key(sourceHash, chain);
+        return memory.containsKey(key) || disk.containsKey(key);
+    }
+
+    SnapshotCache.Snapshot get(String sourceHash, OperationChain chain) {
+        String key = key(sourceHash, chain);
+        synchronized (this) {
+            SnapshotCache.Snapshot snapshot = memory.get(key);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            if (!disk.containsKey(key)) {
+                return null;
+            }
+        }
+        Path file = directory.resolve(key + SUFFIX);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            SnapshotCache.Snapshot snapshot = SnapshotCache.Snapshot.read(in);
+            // uszkodzony plik z poprawnym nagłówkiem - lepiej policzyć wynik od nowa niż go dekodować
+            snapshot.check();
+            remember(key, snapshot);
+            // data modyfikacji to czas ostatniego użycia - kolejność usuwania po ponownym uruchomieniu
+            background(() -> touch(file));
+            return snapshot;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Nie udało się odczytać zapisanego wyniku " + file, e);
+            forget(key);
+            return null;
+        }
+    }
+
+    void put(String sourceHash, OperationChain chain, SnapshotCache.Snapshot snapshot) {
+        String key = key(sourceHash, chain);
+        remember(key, snapshot);
+        if (directory != null && snapshot.bytes() <= diskBudget) {
+            // zadania wątku zapisu idą po kolei, więc ten zapis wykona się po przeglądzie katalogu
+            background(() -> writeToDisk(key, snapshot));
+        }
+    }
+
+    private void background(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            // po close() wyniki zostają tylko w pamięci
+        }
+    }
+
+    private synchronized void remember(String key, SnapshotCache.Snapshot snapshot) {
+        long size = snapshot.bytes();
+        if (size > memoryBudget) {
+            return;
+        }
+        SnapshotCache.Snapshot previous = memory.put(key, snapshot);
+        if (previous != null) {
+            memoryUsed -= previous.bytes();
+        }
+        memoryUsed += size;
+        var iterator = memory.values().iterator();
+        while (memoryUsed > memoryBudget && iterator.hasNext()) {
+            memoryUsed -= iterator.next().bytes();
+            iterator.remove();
+        }
+    }
+
+    private void writeToDisk(String key, SnapshotCache.Snapshot snapshot) {
+        if (!diskReady) {
+            return;
+        }
+        synchronized (this) {
+            if (disk.containsKey(key)) {
+                return;
+            }
+        }
+        Path target = directory.resolve(key + SUFFIX);
+        try {
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    snapshot.write(out);
+                }
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            synchronized (this) {
+                Long previous = disk.put(key, Files.size(target));
+                diskUsed += disk.get(key) - (previous == null ? 0 : previous);
+            }
+            for (String old : overBudget(key)) {
+                Files.deleteIfExists(directory.resolve(old + SUFFIX));
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Nie udało się zapisać wyniku na dysk", e);
+        }
+    }
+
+    // Zdejmuje z indeksu najdawniej używane pliki ponad budżet (poza plikiem keep); pliki usuwa wywołujący
+    private synchronized List<String> overBudget(String keep) {
+        List<String> evicted = new ArrayList<>();
+        var iterator = disk.entrySet().iterator();
+        while (diskUsed > diskBudget && iterator.hasNext()) {
+            var eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            diskUsed -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+    private void forget(String key) {
+        synchronized (this) {
+            Long size = disk.remove(key);
+            if (size != null) {
+                diskUsed -= size;
+            }
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(key + SUFFIX));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Nie udało się usunąć zapisanego wyniku", e);
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // plik mógł zostać właśnie usunięty przy zwalnianiu miejsca
+        }
+    }
+
+    // Zapisane wcześniej pliki, od najdawniej używanego; pliki tymczasowe po przerwanym zapisie są usuwane
+    private boolean openDirectory() {
+        try {
+            Files.createDirectories(directory);
+            record Entry(String key, long size, FileTime used) {
+            }
+            List<Entry> entries = new ArrayList<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        Files.deleteIfExists(file);
+                    } else if (name.endsWith(SUFFIX)) {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        entries.add(new Entry(name.substring(0, name.length() - SUFFIX.length()), attributes.size(),
+                                attributes.lastModifiedTime()));
+                    }
+                }
+            }
+            entries.sort(Comparator.comparing(Entry::used));
+            synchronized (this) {
+                for (Entry entry : entries) {
+                    disk.put(entry.key(), entry.size());
+                    diskUsed += entry.size();
+                }
+            }
+            // budżet mógł zostać zmniejszony od poprzedniego uruchomienia
+            for (String old : overBudget(null)) {
+                Files.deleteIfExists(directory.resolve(old + SUFFIX));
+            }
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            logger.log(Level.WARNING, "Zapis wyników na dysku wyłączony - brak dostępu do " + directory, e);
+            return false;
+        }
+    }
+
+    private static String key(String sourceHash, OperationChain chain) {
+        MessageDigest digest = sha256();
+        digest.update((sourceHash + "\n" + chain.spec()).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Brak algorytmu SHA-256", e);
+        }
+    }
+
+    // Czeka na zapis oczekujących wyników na dysk
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
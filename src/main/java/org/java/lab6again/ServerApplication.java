@@ -0,0 +1,81 @@
+package org.java.lab6again;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+// Serwer zadań bez interfejsu graficznego (JobServer):
+// ServerApplication [opcje]
+//   --host=<adres>      adres nasłuchiwania (domyślnie 127.0.0.1 - tylko lokalnie)
+//   --port=<n>          port (domyślnie 8080)
+//   --workers=<n>       zadania przetwarzane jednocześnie (domyślnie liczba rdzeni)
+//   --queue=<n>         zadania czekające w kolejce, kolejne dostają 503 (domyślnie 4 na wątek)
+//   --max-mb=<n>        największy przyjmowany plik obrazu (domyślnie 64)
+//   --timeout-s=<n>     najdłuższy czas przetwarzania jednego zadania, potem 504 (domyślnie 120)
+//   --metrics=<plik>    pomiary operacji zapisywane do pliku (*.json jako JSON, inne w formacie Prometheusa)
+public class ServerApplication {
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 8080;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queue = -1;
+        long maxMb = 64;
+        long timeoutSeconds = 120;
+        Path metricsFile = null;
+        for (String arg : args) {
+            if (arg.startsWith("--host=")) {
+                host = arg.substring("--host=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = parseNumber(arg, "--port=");
+            } else if (arg.startsWith("--workers=")) {
+                workers = parseNumber(arg, "--workers=");
+            } else if (arg.startsWith("--queue=")) {
+                queue = parseNumber(arg, "--queue=");
+            } else if (arg.startsWith("--max-mb=")) {
+                maxMb = parseNumber(arg, "--max-mb=");
+            } else if (arg.startsWith("--timeout-s=")) {
+                timeoutSeconds = parseNumber(arg, "--timeout-s=");
+            } else if (arg.startsWith("--metrics=")) {
+                metricsFile = Paths.get(arg.substring("--metrics=".length()));
+            } else {
+                usage();
+            }
+        }
+        if (workers < 1 || maxMb < 1 || timeoutSeconds < 1) {
+            System.err.println("Liczba wątków, rozmiar pliku i limit czasu muszą być dodatnie");
+            System.exit(2);
+        }
+
+        if (metricsFile != null) {
+            Metrics.global().exportPeriodically(metricsFile, Duration.ofSeconds(10));
+        } else {
+            Metrics.exportFromSystemProperties();
+        }
+
+        JobServer server = new JobServer(new InetSocketAddress(host, port), workers, queue < 0 ? workers * 4 : queue,
+                maxMb * 1024 * 1024, Duration.ofSeconds(timeoutSeconds));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "serwer-koniec"));
+        server.start();
+        InetSocketAddress address = server.address();
+        System.out.printf("Serwer nasłuchuje na http://%s:%d (wątki: %d)%n", address.getHostString(), address.getPort(), workers);
+    }
+
+    private static void usage() {
+        System.err.println("Użycie: ServerApplication [--host=127.0.0.1] [--port=8080] [--workers=<n>] [--queue=<n>] [--max-mb=64] [--timeout-s=120] [--metrics=<plik>]");
+        System.err.println("Przykład: curl --data-binary @zdjecie.jpg \"http://127.0.0.1:8080/process?ops=threshold:128,edges\" -o wynik.jpg");
+        System.exit(2);
+    }
+
+    // Liczbowa wartość opcji; niepoprawna kończy program z opisem użycia, tak jak nieznane argumenty
+    private static int parseNumber(String arg, String option) {
+        try {
+            return Integer.parseInt(arg.substring(option.length()));
+        } catch (NumberFormatException e) {
+            System.err.println("Niepoprawna wartość opcji " + option.substring(0, option.length() - 1) + ": " + arg.substring(option.length()));
+            usage();
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Wyniki kolejnych kroków edycji skompresowane w pamięci (Deflate po różnicowaniu sąsiednich pikseli, jak filtr
+// "Sub" w PNG), z usuwaniem najdawniej używanych po przekroczeniu budżetu bajtów.
+// Kluczem jest łańcuch operacji od obrazu źródłowego; brakujący krok odtwarzany jest od najbliższego zapisanego.
+// Z wspólną pamięcią ResultCache wyniki są też zapisywane pod skrótem pliku źródłowego i odczytywane z niej,
+// więc przetrwają ponowne otwarcie pliku i ponowne uruchomienie aplikacji.
+public final class SnapshotCache {
+
+    // ok. 1 MPx na fragment - fragmenty kompresowane i rozpakowywane są równolegle
+    private static final int CHUNK_PIXELS = 1 << 20;
+
+    private static final int FORMAT = 0x4c364331;
+
+    private final long budget;
+    private final Map<String, Snapshot> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long used;
+    // wspólna pamięć wyników i skrót pliku źródłowego albo null
+    private final ResultCache shared;
+    private final String sourceHash;
+
+    // Skompresowany obraz - niezmienny, więc ten sam może leżeć w kilku pamięciach podręcznych naraz
+    record Snapshot(int width, int height, boolean alpha, int chunkRows, byte[][] chunks) {
+        long bytes() {
+            long total = 64;
+            for (byte[] chunk : chunks) {
+                total += chunk.length + 16;
+            }
+            return total;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(FORMAT);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeBoolean(alpha);
+            out.writeInt(chunkRows);
+            out.writeInt(chunks.length);
+            for (byte[] chunk : chunks) {
+                out.writeInt(chunk.length);
+                out.write(chunk);
+            }
+        }
+
+        static Snapshot read(DataInput in) throws IOException {
+            if (in.readInt() != FORMAT) {
+                throw new IOException("Nieznany format kopii obrazu");
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            boolean alpha = in.readBoolean();
+            int chunkRows = in.readInt();
+            int count = in.readInt();
+            if (width <= 0 || height <= 0 || chunkRows <= 0 || count != (height + chunkRows - 1) / chunkRows
+                    || (long) width * Math.min(chunkRows, height) * 4 > Integer.MAX_VALUE) {
+                throw new IOException("Uszkodzona kopia obrazu");
+            }
+            byte[][] chunks = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                int length = in.readInt();
+                // Deflate nie wydłuża danych więcej niż o kilka bajtów na blok - większa długość to uszkodzony plik
+                if (length < 0 || length > 2L * width * Math.min(chunkRows, height) * 4 + 64) {
+                    throw new IOException("Uszkodzona kopia obrazu");
+                }
+                chunks[i] = new byte[length];
+                in.readFully(chunks[i]);
+            }
+            return new Snapshot(width, height, alpha, chunkRows, chunks);
+        }
+
+        // Rozpakowuje wszystkie fragmenty bez składania obrazu - kopia z pliku może być ucięta albo uszkodzona
+        void check() throws IOException {
+            int channels = alpha ? 4 : 3;
+            byte[] raw = new byte[Math.min(chunkRows, height) * width * channels];
+            for (int i = 0; i < chunks.length; i++) {
+                int rows = Math.min(chunkRows, height - i * chunkRows);
+                try {
+                    inflate(chunks[i], raw, rows * width * channels);
+                } catch (DataFormatException e) {
+                    throw new IOException("Uszkodzona kopia obrazu", e);
+                }
+            }
+        }
+    }
+
+    // Najdłuższy zapisany początek łańcucha: length pierwszych operacji daje image
+    public record Hit(int length, BufferedImage image) {
+    }
+
+    public SnapshotCache(long budgetBytes) {
+        this(budgetBytes, null, null);
+    }
+
+    // shared - wspólna pamięć wyników dla pliku źródłowego o skrócie sourceHash (ResultCache.hash)
+    public SnapshotCache(long budgetBytes, ResultCache shared, String sourceHash) {
+        this.budget = budgetBytes;
+        this.shared = sourceHash == null ? null : shared;
+        this.sourceHash = sourceHash;
+    }
+
+    public synchronized long usedBytes() {
+        return used;
+    }
+
+    public boolean contains(OperationChain chain) {
+        synchronized (this) {
+            if (entries.containsKey(chain.spec())) {
+                return true;
+            }
+        }
+        return shared != null && shared.contains(sourceHash, chain);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        used = 0;
+    }
+
+    public void put(OperationChain chain, BufferedImage image, TileScheduler scheduler) {
+        Snapshot snapshot = compress(IntImages.toIntImage(image), scheduler);
+        store(chain.spec(), snapshot);
+        if (shared != null) {
+            shared.put(sourceHash, chain, snapshot);
+        }
+    }
+
+    private void store(String key, Snapshot snapshot) {
+        long size = snapshot.bytes();
+        if (size > budget) {
+            return;
+        }
+        synchronized (this) {
+            Snapshot previous = entries.put(key, snapshot);
+            if (previous != null) {
+                used -= previous.bytes();
+            }
+            used += size;
+            var iterator = entries.values().iterator();
+            while (used > budget && iterator.hasNext()) {
+                used -= iterator.next().bytes();
+                iterator.remove();
+            }
+        }
+    }
+
+    // Nowa kopia zapisanego wyniku albo null
+    public BufferedImage get(OperationChain chain, TileScheduler scheduler) {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = entries.get(chain.spec());
+        }
+        if (snapshot == null && shared != null) {
+            snapshot = shared.get(sourceHash, chain);
+            if (snapshot != null) {
+                store(chain.spec(), snapshot);
+            }
+        }
+        return snapshot == null ? null : decompress(snapshot, scheduler);
+    }
+
+    public Hit nearest(OperationChain chain, TileScheduler scheduler) {
+        return nearest(chain, scheduler, 0);
+    }
+
+    // Szuka tylko początków dłuższych niż minLength operacji
+    private Hit nearest(OperationChain chain, TileScheduler scheduler, int minLength) {
+        List<ImageOperation> operations = chain.operations();
+        for (int length = operations.size(); length > minLength; length--) {
+            BufferedImage image = get(new OperationChain(operations.subList(0, length)), scheduler);
+            if (image != null) {
+                return new Hit(length, image);
+            }
+        }
+        return null;
+    }
+
+    // Wynik łańcucha: od najbliższego zapisanego kroku, pozostałe operacje po kolei - tak samo jak przy edycji
+    public BufferedImage render(OperationChain chain, BufferedImage source, TileScheduler scheduler) {
+        return render(chain, source, OperationChain.empty(), source, scheduler);
+    }
+
+    // Jak wyżej, ale known (wynik łańcucha knownChain, np. wyświetlany obraz) jest używany bez kopiowania,
+    // jeśli jest dłuższym początkiem łańcucha niż zapisane kroki
+    public BufferedImage render(OperationChain chain, BufferedImage source, OperationChain knownChain, BufferedImage known,
+                                TileScheduler scheduler) {
+        boolean useKnown = known != null && chain.startsWith(knownChain);
+        int knownLength = useKnown ? knownChain.operations().size() : 0;
+        if (useKnown && knownLength == chain.operations().size()) {
+            return known;
+        }
+        Hit hit = nearest(chain, scheduler, knownLength);
+        BufferedImage image = hit != null ? hit.image() : useKnown ? known : source;
+        boolean owned = hit != null;
+        List<ImageOperation> operations = chain.operations();
+        for (int i = hit != null ? hit.length() : knownLength; i < operations.size(); i++) {
+            BufferedImage next = OperationChain.empty().then(operations.get(i)).apply(image, scheduler, owned);
+            owned = owned || next != image;
+            image = next;
+        }
+        return image;
+    }
+
+    private static Snapshot compress(BufferedImage image, TileScheduler scheduler) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = IntImages.hasAlpha(image);
+        int[] pixels = IntImages.pixels(image);
+        int chunkRows = Math.max(1, CHUNK_PIXELS / width);
+        byte[][] chunks = new byte[(height + chunkRows - 1) / chunkRows][];
+        scheduler.forEachTile(width, height, width, chunkRows, 0, tile -> {
+            byte[] raw = encodeRows(pixels, width, tile.y0(), tile.y1(), alpha);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                byte[] out = new byte[Math.max(64, raw.length / 4)];
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    length += deflater.deflate(out, length, out.length - length);
+                }
+                chunks[tile.y0() / chunkRows] = Arrays.copyOf(out, length);
+            } finally {
+                deflater.end();
+            }
+        });
+        return new Snapshot(width, height, alpha, chunkRows, chunks);
+    }
+
+    private static BufferedImage decompress(Snapshot snapshot, TileScheduler scheduler) {
+        int width = snapshot.width();
+        BufferedImage image = IntImages.create(width, snapshot.height(), snapshot.alpha());
+        int[] pixels = IntImages.pixels(image);
+        int channels = snapshot.alpha() ? 4 : 3;
+        scheduler.forEachTile(width, snapshot.height(), width, snapshot.chunkRows(), 0, tile -> {
+            byte[] raw = new byte[(tile.y1() - tile.y0()) * width * channels];
+            try {
+                inflate(snapshot.chunks()[tile.y0() / snapshot.chunkRows()], raw, raw.length);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Uszkodzona kopia obrazu w historii", e);
+            }
+            decodeRows(raw, pixels, width, tile.y0(), tile.y1(), snapshot.alpha());
+        });
+        return image;
+    }
+
+    // Dokładnie length bajtów fragmentu; gdy dane skończą się wcześniej, inflate zwracałby 0 w nieskończoność
+    private static void inflate(byte[] chunk, byte[] raw, int length) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(chunk);
+            int done = 0;
+            while (done < length) {
+                int read = inflater.inflate(raw, done, length - done);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Fragment krótszy niż " + length + " bajtów");
+                }
+                done += read;
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Różnice kanałów względem piksela po lewej - dla zdjęć i gładkich przejść daje dużo zer i małych wartości
+    private static byte[] encodeRows(int[] pixels, int width, int y0, int y1, boolean alpha) {
+        int channels = alpha ? 4 : 3;
+        byte[] raw = new byte[(y1 - y0) * width * channels];
+        int out = 0;
+        for (int y = y0; y < y1; y++) {
+            int previous = 0;
+            for (int i = y * width, end = i + width; i < end; i++) {
+                int p = pixels[i];
+                if (alpha) {
+                    raw[out++] = (byte) ((p >>> 24) - (previous >>> 24));
+                }
+                raw[out++] = (byte) (((p >> 16) & 0xff) - ((previous >> 16) & 0xff));
+                raw[out++] = (byte) (((p >> 8) & 0xff) - ((previous >> 8) & 0xff));
+                raw[out++] = (byte) ((p & 0xff) - (previous & 0xff));
+                previous = p;
+            }
+        }
+        return raw;
+    }
+
+    private static void decodeRows(byte[] raw, int[] pixels, int width, int y0, int y1, boolean alpha) {
+        int in = 0;
+        for (int y = y0; y < y1; y++) {
+            int a = alpha ? 0 : 0xff;
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            for (int i = y * width, end = i + width; i < end; i++) {
+                if (alpha) {
+                    a = (a + raw[in++]) & 0xff;
+                }
+                r = (r + raw[in++]) & 0xff;
+                g = (g + raw[in++]) & 0xff;
+                b = (b + raw[in++]) & 0xff;
+                pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+}
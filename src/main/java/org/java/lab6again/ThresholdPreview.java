@@ -0,0 +1,98 @@
+package org.java.lab6again;
+
+import java.awt.image.BufferedImage;
+
+// Podgląd progowania na żywo: jasność pikseli i jej histogram liczone są raz, a zmiana progu to tylko nowa
+// tablica 256 kolorów i jedno przejście po jasnościach (bez ponownego liczenia (r + g + b) / 3).
+// Jasność liczona tak samo jak w PixelKernels.threshold, więc podgląd odpowiada wynikowi operacji.
+public final class ThresholdPreview {
+
+    private final int width;
+    private final int height;
+    private final byte[] gray;
+    private final int[] histogram = new int[256];
+    private final int[] lut = new int[256];
+
+    private ThresholdPreview(int width, int height, byte[] gray) {
+        this.width = width;
+        this.height = height;
+        this.gray = gray;
+    }
+
+    public static ThresholdPreview of(BufferedImage image, TileScheduler scheduler) {
+        BufferedImage source = IntImages.toIntImage(image);
+        int[] pixels = IntImages.pixels(source);
+        ThresholdPreview preview = new ThresholdPreview(source.getWidth(), source.getHeight(), new byte[pixels.length]);
+        scheduler.forEachSpan(pixels.length, (from, to) -> {
+            int[] local = new int[256];
+            for (int i = from; i < to; i++) {
+                int p = pixels[i];
+                int value = (((p >> 16) & 0xff) + ((p >> 8) & 0xff) + (p & 0xff)) / 3;
+                preview.gray[i] = (byte) value;
+                local[value]++;
+            }
+            synchronized (preview.histogram) {
+                for (int v = 0; v < 256; v++) {
+                    preview.histogram[v] += local[v];
+                }
+            }
+        });
+        return preview;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int[] histogram() {
+        return histogram.clone();
+    }
+
+    // Piksele 0xAARRGGBB po progowaniu do dst (width * height); jasność < level -> czarny, pozostałe białe
+    public void render(int level, int[] dst) {
+        for (int v = 0; v < 256; v++) {
+            lut[v] = v < level ? 0xff000000 : 0xffffffff;
+        }
+        for (int i = 0; i < gray.length; i++) {
+            dst[i] = lut[gray[i] & 0xff];
+        }
+    }
+
+    // Próg metodą Otsu z zapamiętanego histogramu
+    public int otsu() {
+        return otsu(histogram);
+    }
+
+    // Próg maksymalizujący wariancję między klasami [0, level) i [level, 255]
+    public static int otsu(int[] histogram) {
+        long total = 0;
+        long sum = 0;
+        for (int v = 0; v < 256; v++) {
+            total += histogram[v];
+            sum += (long) v * histogram[v];
+        }
+        long below = 0;
+        long belowSum = 0;
+        double best = -1;
+        int level = 128;
+        for (int t = 0; t < 255; t++) {
+            below += histogram[t];
+            belowSum += (long) t * histogram[t];
+            long above = total - below;
+            if (below == 0 || above == 0) {
+                continue;
+            }
+            double difference = (double) belowSum / below - (double) (sum - belowSum) / above;
+            double variance = (double) below * above * difference * difference;
+            if (variance > best) {
+                best = variance;
+                level = t + 1;
+            }
+        }
+        return level;
+    }
+}
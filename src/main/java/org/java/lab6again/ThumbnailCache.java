@@ -0,0 +1,123 @@
+package org.java.lab6again;
+
+import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Miniatury plików dla galerii: dekodowane w tle od razu w zmniejszeniu (ImageCodecs.read z minimalnym
+// rozmiarem - dla JPEG w skali 1/8 z samych współczynników DC) i trzymane w pamięci, od najdawniej używanej
+// usuwane po przekroczeniu limitu. Kilka komórek proszących o ten sam plik czeka na jedno dekodowanie, a plik,
+// którego żadna komórka już nie pokazuje (przewinięty przed dekodowaniem), jest pomijany.
+// Wszystkie metody wywoływane są z wątku JavaFX.
+final class ThumbnailCache implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ThumbnailCache.class.getName());
+
+    private final int size;
+    private final int capacity;
+    private final Map<Path, Image> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Request> loading = new HashMap<>();
+    private final ExecutorService pool;
+
+    // waiting - liczba komórek czekających na miniaturę
+    private static final class Request {
+        final CompletableFuture<Image> result = new CompletableFuture<>();
+        int waiting;
+    }
+
+    // size - bok kwadratu w pikselach ekranu, w który wpisana jest miniatura; capacity - liczba miniatur w pamięci
+    ThumbnailCache(int size, int capacity, int threads) {
+        this.size = size;
+        this.capacity = capacity;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "miniatury-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        Metrics.global().registerPool("miniatury", pool);
+    }
+
+    // Wynik kończy się w wątku JavaFX; po release() dla tego pliku może zostać anulowany
+    CompletableFuture<Image> request(Path file) {
+        Image cached = thumbnails.get(file);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        Request request = loading.get(file);
+        if (request == null) {
+            Request created = new Request();
+            loading.put(file, created);
+            pool.execute(() -> load(file, created));
+            request = created;
+        }
+        request.waiting++;
+        return request.result;
+    }
+
+    // Komórka nie pokazuje już pliku - jeśli nikt inny na niego nie czeka, dekodowanie jest pomijane
+    void release(Path file) {
+        Request request = loading.get(file);
+        if (request != null && --request.waiting == 0) {
+            loading.remove(file);
+            request.result.cancel(false);
+        }
+    }
+
+    private void load(Path file, Request request) {
+        if (request.result.isDone()) {
+            return;
+        }
+        Image image;
+        try {
+            BufferedImage reduced = ImageCodecs.read(file, null, size, size);
+            image = SwingFXUtils.toFXImage(fit(reduced, size), null);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Nie udało się utworzyć miniatury " + file, e);
+            Platform.runLater(() -> {
+                loading.remove(file, request);
+                request.result.completeExceptionally(e);
+            });
+            return;
+        }
+        Platform.runLater(() -> {
+            loading.remove(file, request);
+            thumbnails.put(file, image);
+            var iterator = thumbnails.values().iterator();
+            while (thumbnails.size() > capacity && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+            request.result.complete(image);
+        });
+    }
+
+    // Obraz wpisany w kwadrat o boku size (bez powiększania)
+    static BufferedImage fit(BufferedImage image, int size) {
+        int width = image.getWidth() >= image.getHeight() ? size
+                : Math.max(1, (int) Math.round((double) size * image.getWidth() / image.getHeight()));
+        return PreviewProxy.create(image, width, TileScheduler.shared());
+    }
+
+    @Override
+    public void close() {
+        Metrics.global().unregisterPool("miniatury", pool);
+        pool.shutdownNow();
+        loading.values().forEach(request -> request.result.cancel(false));
+        loading.clear();
+    }
+}
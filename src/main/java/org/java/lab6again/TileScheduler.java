@@ -0,0 +1,156 @@
+package org.java.lab6again;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+// Wspólny harmonogram kafelków: obraz dzielony jest na fragmenty mieszczące się w pamięci podręcznej,
+// a wątki ForkJoinPool podkradają sobie pracę. Liczba wątków domyślnie równa liczbie rdzeni.
+public final class TileScheduler {
+
+    // ok. 256 KB pikseli int - fragment mieści się w L2
+    public static final int TILE_PIXELS = 1 << 16;
+
+    private static final TileScheduler SHARED = new TileScheduler(Runtime.getRuntime().availableProcessors());
+
+    static {
+        Metrics.global().registerPool("filtry", SHARED.pool);
+    }
+
+    private final ForkJoinPool pool;
+    private final JobContext job;
+
+    public interface SpanTask {
+        void run(int from, int to);
+    }
+
+    public interface TileTask {
+        void run(Tile tile);
+    }
+
+    // Kafelek [x0, x1) x [y0, y1) oraz obszar do odczytu powiększony o margines (halo) i przycięty do obrazu
+    public record Tile(int x0, int y0, int x1, int y1, int readX0, int readY0, int readX1, int readY1) {
+    }
+
+    public TileScheduler(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("filtry-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.job = null;
+    }
+
+    private TileScheduler(ForkJoinPool pool, JobContext job) {
+        this.pool = pool;
+        this.job = job;
+    }
+
+    // Widok na tę samą pulę, który raportuje postęp do zadania i pomija kafelki po anulowaniu
+    public TileScheduler forJob(JobContext job) {
+        return new TileScheduler(pool, job);
+    }
+
+    public static TileScheduler shared() {
+        return SHARED;
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    // Zadanie w tle na wątkach harmonogramu - wywołania forEach* wewnątrz niego nie blokują dodatkowych wątków
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, pool);
+    }
+
+    // Podział ciągłego zakresu [0, length) na fragmenty po TILE_PIXELS - dla operacji punktowych
+    public void forEachSpan(int length, SpanTask task) {
+        int count = Math.max(1, (length + TILE_PIXELS - 1) / TILE_PIXELS);
+        run(count, i -> task.run(i * TILE_PIXELS, Math.min(length, (i + 1) * TILE_PIXELS)));
+    }
+
+    // Podział obrazu na kafelki - dla filtrów sąsiedztwa; halo to liczba pikseli czytanych poza kafelkiem
+    public void forEachTile(int width, int height, int halo, TileTask task) {
+        forEachTile(width, height, tileWidth(width), tileHeight(width), halo, task);
+    }
+
+    public void forEachTile(int width, int height, int tileWidth, int tileHeight, int halo, TileTask task) {
+        int columns = Math.max(1, (width + tileWidth - 1) / tileWidth);
+        int rows = Math.max(1, (height + tileHeight - 1) / tileHeight);
+        run(columns * rows, i -> {
+            int x0 = (i % columns) * tileWidth;
+            int y0 = (i / columns) * tileHeight;
+            int x1 = Math.min(width, x0 + tileWidth);
+            int y1 = Math.min(height, y0 + tileHeight);
+            task.run(new Tile(x0, y0, x1, y1,
+                    Math.max(0, x0 - halo), Math.max(0, y0 - halo),
+                    Math.min(width, x1 + halo), Math.min(height, y1 + halo)));
+        });
+    }
+
+    // Kafelki pełnej szerokości, dopóki wiersz nie przekracza 2048 pikseli
+    private static int tileWidth(int width) {
+        return Math.max(1, Math.min(width, 2048));
+    }
+
+    private static int tileHeight(int width) {
+        return Math.max(1, TILE_PIXELS / tileWidth(width));
+    }
+
+    private void run(int count, IndexTask task) {
+        IndexTask leaf = task;
+        if (job != null) {
+            job.checkCancelled();
+            job.addWork(count);
+            // po anulowaniu kafelki są pomijane, ale i tak czekamy na wszystkie - nic nie liczy się dalej w tle
+            leaf = i -> {
+                if (!job.isCancelled()) {
+                    task.run(i);
+                }
+                job.worked(1);
+            };
+        }
+        Split action = new Split(0, count, leaf);
+        if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+            action.invoke();
+        } else {
+            pool.invoke(action);
+        }
+        if (job != null) {
+            job.checkCancelled();
+        }
+    }
+
+    private interface IndexTask {
+        void run(int index);
+    }
+
+    // Rekurencyjny podział listy fragmentów na połowy
+    @SuppressWarnings("serial")
+    private static final class Split extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IndexTask task;
+
+        Split(int from, int to, IndexTask task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.run(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Split(from, mid, task), new Split(mid, to, task));
+        }
+    }
+}
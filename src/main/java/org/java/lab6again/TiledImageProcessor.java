@@ -0,0 +1,290 @@
+package org.java.lab6again;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.Vector;
+
+// Przetwarzanie obrazów większych niż sterta: obraz jest dekodowany pasami (ImageReader z sourceRegion),
+// każdy pas przechodzi przez łańcuch operacji i trafia do kodera wiersz po wierszu.
+// W pamięci jest naraz tylko jeden pas, więc zużycie pamięci zależy od budżetu, a nie od rozmiaru obrazu.
+//
+// Ograniczenia:
+//  - obsługiwane są operacje punktowe i filtry sąsiedztwa (pas czytany jest z marginesem wierszy),
+//    obrót i skalowanie wymagają dostępu do całego obrazu,
+//  - zapis strumieniowy obsługują kodery PNG, TIFF i BMP; koder JPEG z ImageIO pobiera cały raster naraz,
+//  - dla JPEG i PNG każdy pas dekodowany jest od początku pliku (dekoder nie umie przeskoczyć wierszy),
+//    więc tryb zamienia czas procesora na pamięć; TIFF z paskami/kafelkami czyta tylko potrzebny fragment.
+public class TiledImageProcessor {
+
+    public static final Set<String> STREAMING_FORMATS = Set.of("png", "tif", "tiff", "bmp");
+
+    // int[] wyniku + zdekodowany pas + kopia robocza filtrów sąsiedztwa
+    private static final int BYTES_PER_PIXEL = 12;
+    private static final int MIN_BAND_ROWS = 16;
+
+    private final OperationChain chain;
+    private final long memoryBudget;
+    private final TileScheduler scheduler;
+    private final int halo;
+
+    public TiledImageProcessor(OperationChain chain, long memoryBudget, TileScheduler scheduler) {
+        this.chain = chain;
+        this.memoryBudget = memoryBudget;
+        this.scheduler = scheduler;
+        this.halo = haloRows(chain);
+    }
+
+    // Liczba wierszy marginesu potrzebna, żeby wynik pasa był taki sam jak dla całego obrazu
+    static int haloRows(OperationChain chain) {
+        int rows = 0;
+        for (ImageOperation operation : chain.operations()) {
+            if (operation instanceof ImageOperation.GeometricOperation) {
+                throw new IllegalArgumentException(
+                        "Operacja '" + operation.spec() + "' nie jest obsługiwana w trybie kafelkowym");
+            }
+            if (operation instanceof ImageOperation.NeighbourhoodOperation neighbourhood) {
+                // kolejne filtry sąsiedztwa poszerzają potrzebny margines
+                rows += neighbourhood.radius();
+            }
+        }
+        return rows;
+    }
+
+    int bandRows(int width) {
+        long rows = memoryBudget / ((long) width * BYTES_PER_PIXEL);
+        return (int) Math.max(MIN_BAND_ROWS, Math.min(Integer.MAX_VALUE, rows));
+    }
+
+    public void process(Path input, Path output, String format) throws IOException {
+        String outputFormat = format.toLowerCase(Locale.ROOT);
+        if (!STREAMING_FORMATS.contains(outputFormat)) {
+            throw new IllegalArgumentException("Zapis kafelkowy obsługuje formaty PNG, TIFF i BMP, a nie: " + format
+                    + " (koder JPEG z ImageIO wymaga całego obrazu w pamięci)");
+        }
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(input.toFile())) {
+            if (in == null) {
+                throw new IOException("Nie można otworzyć pliku: " + input);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Nieobsługiwany format pliku: " + input);
+            }
+            ImageReader reader = readers.next();
+            ImageWriter writer = ImageIO.getImageWritersByFormatName(outputFormat).next();
+            try {
+                // pasy czytamy wielokrotnie, więc strumień nie może być tylko do przodu
+                reader.setInput(in, false, true);
+                boolean alpha = reader.getImageTypes(0).next().getColorModel().hasAlpha();
+                BandedImage result = new BandedImage(reader, reader.getWidth(0), reader.getHeight(0),
+                        bandRows(reader.getWidth(0)), alpha);
+
+                Files.deleteIfExists(output);
+                try (ImageOutputStream out = ImageIO.createImageOutputStream(output.toFile())) {
+                    writer.setOutput(out);
+                    writer.write(null, new IIOImage(result, null, null), writer.getDefaultWriteParam());
+                }
+            } finally {
+                writer.dispose();
+                reader.dispose();
+            }
+        }
+    }
+
+    // Wynik przetwarzania widziany przez koder jako obraz złożony z poziomych pasów liczonych na żądanie
+    private final class BandedImage implements RenderedImage {
+        private final ImageReader reader;
+        private final int width;
+        private final int height;
+        private final int bandRows;
+        private final int type;
+        private final ColorModel colorModel;
+        private final SampleModel sampleModel;
+
+        private int cachedBand = -1;
+        private WritableRaster cachedRaster;
+
+        BandedImage(ImageReader reader, int width, int height, int bandRows, boolean alpha) {
+            this.reader = reader;
+            this.width = width;
+            this.height = height;
+            this.bandRows = Math.min(bandRows, height);
+            this.type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            BufferedImage template = new BufferedImage(1, 1, type);
+            this.colorModel = template.getColorModel();
+            this.sampleModel = template.getSampleModel().createCompatibleSampleModel(width, this.bandRows);
+        }
+
+        // Pas numer band jako raster w układzie współrzędnych całego obrazu
+        private synchronized Raster band(int band) {
+            if (band == cachedBand) {
+                return cachedRaster;
+            }
+            int y0 = band * bandRows;
+            int y1 = Math.min(height, y0 + bandRows);
+            int r0 = Math.max(0, y0 - halo);
+            int r1 = Math.min(height, y1 + halo);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(0, r0, width, r1 - r0));
+                BufferedImage decoded = reader.read(0, param);
+                BufferedImage processed = ensureType(chain.apply(decoded, scheduler, true));
+                cachedRaster = processed.getRaster()
+                        .createWritableChild(0, y0 - r0, width, y1 - y0, 0, y0, null);
+                cachedBand = band;
+                return cachedRaster;
+            } catch (IOException e) {
+                throw new IllegalStateException("Nie udało się odczytać pasa " + band, e);
+            }
+        }
+
+        private BufferedImage ensureType(BufferedImage image) {
+            if (image.getType() == type) {
+                return image;
+            }
+            BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+            Graphics2D g = converted.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            return converted;
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                // cały obraz - tylko dla koderów, które nie czytają fragmentami
+                raster = colorModel.createCompatibleWritableRaster(width, height);
+            }
+            Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+            int first = bounds.y / bandRows;
+            int last = (bounds.y + bounds.height - 1) / bandRows;
+            for (int band = first; band <= last && !bounds.isEmpty(); band++) {
+                Raster source = band(band);
+                Rectangle part = bounds.intersection(source.getBounds());
+                raster.setRect(source.createChild(part.x, part.y, part.width, part.height, part.x, part.y, null));
+            }
+            return raster;
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            WritableRaster raster = colorModel.createCompatibleWritableRaster(rect.width, rect.height)
+                    .createWritableTranslatedChild(rect.x, rect.y);
+            return copyData(raster);
+        }
+
+        @Override
+        public Raster getData() {
+            return copyData(null);
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            return band(tileY);
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return java.awt.Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return (height + bandRows - 1) / bandRows;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return bandRows;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+}
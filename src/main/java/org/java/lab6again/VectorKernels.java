@@ -0,0 +1,106 @@
+package org.java.lab6again;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Wersje SIMD jąder z PixelKernels (Vector API, moduł jdk.incubator.vector).
+// Klasa ładowana jest tylko wtedy, gdy moduł jest dostępny - wywołania przechodzą przez PixelKernels.
+final class VectorKernels {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    static void negative(int[] src, int[] dst, int from, int to) {
+        int i = from;
+        for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, src, i).lanewise(VectorOperators.XOR, 0x00ffffff).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            dst[i] = src[i] ^ 0x00ffffff;
+        }
+    }
+
+    static void threshold(int[] src, int[] dst, int from, int to, int level) {
+        int limit = 3 * level;
+        IntVector white = IntVector.broadcast(SPECIES, 0xffffffff);
+        int i = from;
+        for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length()) {
+            VectorMask<Integer> dark = channelSum(IntVector.fromArray(SPECIES, src, i)).compare(VectorOperators.LT, limit);
+            white.blend(0xff000000, dark).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            int p = src[i];
+            int sum = ((p >> 16) & 0xff) + ((p >> 8) & 0xff) + (p & 0xff);
+            dst[i] = sum < limit ? 0xff000000 : 0xffffffff;
+        }
+    }
+
+    static void grayscale(int[] src, int[] dst, int from, int to) {
+        int i = from;
+        for (int upper = from + SPECIES.loopBound(to - from); i < upper; i += SPECIES.length()) {
+            IntVector p = IntVector.fromArray(SPECIES, src, i);
+            IntVector gray = divideBy3(channelSum(p));
+            p.and(0xff000000)
+                    .or(gray.lanewise(VectorOperators.LSHL, 16))
+                    .or(gray.lanewise(VectorOperators.LSHL, 8))
+                    .or(gray)
+                    .intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            int p = src[i];
+            int gray = (((p >> 16) & 0xff) + ((p >> 8) & 0xff) + (p & 0xff)) / 3;
+            dst[i] = (p & 0xff000000) | (gray << 16) | (gray << 8) | gray;
+        }
+    }
+
+    static void grayRow(int[] src, int offset, int[] gray, int grayOffset, int length) {
+        int x = 0;
+        for (int upper = SPECIES.loopBound(length); x < upper; x += SPECIES.length()) {
+            divideBy3(channelSum(IntVector.fromArray(SPECIES, src, offset + x))).intoArray(gray, grayOffset + x);
+        }
+        for (; x < length; x++) {
+            int p = src[offset + x];
+            gray[grayOffset + x] = (((p >> 16) & 0xff) + ((p >> 8) & 0xff) + (p & 0xff)) / 3;
+        }
+    }
+
+    // Wiersz modułu gradientu - jak PixelKernels.gradientMagnitude
+    static void gradientMagnitude(int[] ring, int top, int middle, int bottom, int smoothedTop, int smoothedBottom,
+                                  int side, int center, int shift, int[] dst, int offset, int count) {
+        int x = 0;
+        for (int upper = SPECIES.loopBound(count); x < upper; x += SPECIES.length()) {
+            IntVector gx = IntVector.fromArray(SPECIES, ring, top + x)
+                    .add(IntVector.fromArray(SPECIES, ring, bottom + x)).mul(side)
+                    .add(IntVector.fromArray(SPECIES, ring, middle + x).mul(center));
+            IntVector gy = IntVector.fromArray(SPECIES, ring, smoothedBottom + x)
+                    .sub(IntVector.fromArray(SPECIES, ring, smoothedTop + x));
+            IntVector magnitude = gx.abs().add(gy.abs()).lanewise(VectorOperators.ASHR, shift).min(255);
+            magnitude.lanewise(VectorOperators.LSHL, 16)
+                    .or(magnitude.lanewise(VectorOperators.LSHL, 8))
+                    .or(magnitude)
+                    .or(0xff000000)
+                    .intoArray(dst, offset + x);
+        }
+        for (; x < count; x++) {
+            int gx = side * (ring[top + x] + ring[bottom + x]) + center * ring[middle + x];
+            int gy = ring[smoothedBottom + x] - ring[smoothedTop + x];
+            int magnitude = Math.min(255, (Math.abs(gx) + Math.abs(gy)) >> shift);
+            dst[offset + x] = 0xff000000 | (magnitude << 16) | (magnitude << 8) | magnitude;
+        }
+    }
+
+    private static IntVector channelSum(IntVector p) {
+        return p.lanewise(VectorOperators.LSHR, 16).and(0xff)
+                .add(p.lanewise(VectorOperators.LSHR, 8).and(0xff))
+                .add(p.and(0xff));
+    }
+
+    // s / 3 bez dzielenia: (s * 21846) >> 16 daje dokładny wynik dla s <= 765
+    private static IntVector divideBy3(IntVector sum) {
+        return sum.mul(21846).lanewise(VectorOperators.LSHR, 16);
+    }
+}
@@ -0,0 +1,200 @@
+package org.java.lab6again;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Pliki to JPEG zapisany przez ImageIO (z segmentem JFIF) z dołożonym segmentem EXIF w obu kolejnościach bajtów
+class ExifOrientationTest {
+
+    private static final int IMAGE_WIDTH_TAG = 0x0100;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rotatesLittleEndianExifAndBack() throws IOException {
+        roundTrip(true);
+    }
+
+    @Test
+    void rotatesBigEndianExifAndBack() throws IOException {
+        roundTrip(false);
+    }
+
+    // Obrót w prawo zmienia wartość 6 (już obrócony w prawo) na 3 (180 stopni), a obrót w lewo przywraca
+    // plik bajt w bajt - zmienia się tylko wartość znacznika
+    private void roundTrip(boolean little) throws IOException {
+        byte[] original = withExif(jpeg(), exif(little, 6, true));
+        Path input = write("wejscie.jpg", original);
+        Path rotated = directory.resolve("obrocony.jpg");
+        Path restored = directory.resolve("przywrocony.jpg");
+
+        assertTrue(ExifOrientation.rewrite(input, rotated, Orientation.rotation(90)));
+        byte[] rotatedBytes = Files.readAllBytes(rotated);
+        assertEquals(3, orientation(rotatedBytes));
+        assertEquals(original.length, rotatedBytes.length);
+
+        assertTrue(ExifOrientation.rewrite(rotated, restored, Orientation.rotation(270)));
+        assertArrayEquals(original, Files.readAllBytes(restored));
+    }
+
+    @Test
+    void insertsExifAfterJfifWhenMissing() throws IOException {
+        byte[] original = jpeg();
+        Path output = directory.resolve("wynik.jpg");
+
+        assertTrue(ExifOrientation.rewrite(write("wejscie.jpg", original), output, Orientation.flip(true)));
+        byte[] result = Files.readAllBytes(output);
+        assertEquals(2, orientation(result));
+
+        // APP0 (JFIF) zostaje pierwszy, zaraz za nim APP1, a dalej reszta pliku bez zmian
+        int app0End = 4 + segmentLength(original, 2);
+        assertEquals(0xe0, result[3] & 0xff);
+        assertArrayEquals(Arrays.copyOf(original, app0End), Arrays.copyOf(result, app0End));
+        assertEquals(0xff, result[app0End] & 0xff);
+        assertEquals(0xe1, result[app0End + 1] & 0xff);
+        int app1End = app0End + 2 + segmentLength(result, app0End);
+        assertArrayEquals(Arrays.copyOfRange(original, app0End, original.length),
+                Arrays.copyOfRange(result, app1End, result.length));
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(result)));
+    }
+
+    @Test
+    void refusesExifWithoutOrientationTag() throws IOException {
+        Path input = write("wejscie.jpg", withExif(jpeg(), exif(true, 0, false)));
+        Path output = directory.resolve("wynik.jpg");
+
+        assertFalse(ExifOrientation.rewrite(input, output, Orientation.rotation(90)));
+        assertFalse(Files.exists(output));
+    }
+
+    @Test
+    void refusesFilesOtherThanJpeg() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB), "png", png);
+        Path input = write("wejscie.png", png.toByteArray());
+
+        assertFalse(ExifOrientation.rewrite(input, directory.resolve("wynik.png"), Orientation.rotation(90)));
+    }
+
+    private Path write(String name, byte[] data) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, data);
+        return file;
+    }
+
+    private static byte[] jpeg() throws IOException {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(3, 5, 0xff8000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", bytes);
+        byte[] data = bytes.toByteArray();
+        assertEquals(0xe0, data[3] & 0xff, "ImageIO powinno zapisać segment JFIF");
+        return data;
+    }
+
+    // Segment APP1 z IFD0: szerokość obrazu (LONG) i opcjonalnie Orientation (SHORT)
+    private static byte[] exif(boolean little, int orientation, boolean withOrientation) {
+        int entries = withOrientation ? 2 : 1;
+        int tiffLength = 8 + 2 + entries * 12 + 4;
+        byte[] segment = new byte[4 + 6 + tiffLength];
+        segment[0] = (byte) 0xff;
+        segment[1] = (byte) 0xe1;
+        putShort(segment, 2, segment.length - 2, false);
+        System.arraycopy(new byte[]{'E', 'x', 'i', 'f', 0, 0}, 0, segment, 4, 6);
+        int tiff = 10;
+        segment[tiff] = segment[tiff + 1] = (byte) (little ? 'I' : 'M');
+        putShort(segment, tiff + 2, 42, little);
+        putInt(segment, tiff + 4, 8, little);
+        int ifd = tiff + 8;
+        putShort(segment, ifd, entries, little);
+        int entry = ifd + 2;
+        putShort(segment, entry, IMAGE_WIDTH_TAG, little);
+        putShort(segment, entry + 2, 4, little);
+        putInt(segment, entry + 4, 1, little);
+        putInt(segment, entry + 8, 16, little);
+        if (withOrientation) {
+            entry += 12;
+            putShort(segment, entry, ORIENTATION_TAG, little);
+            putShort(segment, entry + 2, 3, little);
+            putInt(segment, entry + 4, 1, little);
+            putShort(segment, entry + 8, orientation, little);
+        }
+        return segment;
+    }
+
+    // Segment wstawiony zaraz za APP0
+    private static byte[] withExif(byte[] jpeg, byte[] segment) {
+        int at = 4 + segmentLength(jpeg, 2);
+        byte[] result = new byte[jpeg.length + segment.length];
+        System.arraycopy(jpeg, 0, result, 0, at);
+        System.arraycopy(segment, 0, result, at, segment.length);
+        System.arraycopy(jpeg, at, result, at + segment.length, jpeg.length - at);
+        return result;
+    }
+
+    // Wartość Orientation z pierwszego segmentu EXIF albo -1
+    private static int orientation(byte[] jpeg) {
+        int pos = 2;
+        while ((jpeg[pos + 1] & 0xff) != 0xda) {
+            int end = pos + 2 + segmentLength(jpeg, pos);
+            if ((jpeg[pos + 1] & 0xff) == 0xe1 && jpeg[pos + 4] == 'E' && jpeg[pos + 5] == 'x') {
+                int tiff = pos + 10;
+                boolean little = jpeg[tiff] == 'I';
+                int ifd = tiff + getInt(jpeg, tiff + 4, little);
+                int count = getShort(jpeg, ifd, little);
+                for (int i = 0; i < count; i++) {
+                    int entry = ifd + 2 + i * 12;
+                    if (getShort(jpeg, entry, little) == ORIENTATION_TAG) {
+                        return getShort(jpeg, entry + 8, little);
+                    }
+                }
+                return -1;
+            }
+            pos = end;
+        }
+        return -1;
+    }
+
+    private static int segmentLength(byte[] jpeg, int marker) {
+        return getShort(jpeg, marker + 2, false);
+    }
+
+    private static int getShort(byte[] data, int offset, boolean little) {
+        int a = data[offset] & 0xff;
+        int b = data[offset + 1] & 0xff;
+        return little ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static int getInt(byte[] data, int offset, boolean little) {
+        int first = getShort(data, offset, little);
+        int second = getShort(data, offset + 2, little);
+        return little ? (second << 16) | first : (first << 16) | second;
+    }
+
+    private static void putShort(byte[] data, int offset, int value, boolean little) {
+        data[offset + (little ? 0 : 1)] = (byte) value;
+        data[offset + (little ? 1 : 0)] = (byte) (value >> 8);
+    }
+
+    private static void putInt(byte[] data, int offset, int value, boolean little) {
+        putShort(data, offset + (little ? 0 : 2), value & 0xffff, little);
+        putShort(data, offset + (little ? 2 : 0), value >>> 16, little);
+    }
+}
@@ -0,0 +1,174 @@
+package org.java.lab6again;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Pliki zapisane przez ImageIO, a wynik porównywany z dekodowaniem ImageIO z próbkowaniem co 8 pikseli.
+// Obraz to łagodne gradienty, więc średnia bloku 8x8 różni się od jego piksela tylko o kilka poziomów.
+class JpegDcDecoderTest {
+
+    private static final String FORMAT = "javax_imageio_jpeg_image_1.0";
+    // wymiary niepodzielne przez 16 - ostatnie bloki i MCU są niepełne
+    private static final int WIDTH = 501;
+    private static final int HEIGHT = 373;
+    private static final int TOLERANCE = 4;
+
+    @Test
+    void decodesBaseline444() throws IOException {
+        byte[] jpeg = write(gradient(), false, true, 0);
+        assertMatchesImageIo(jpeg);
+    }
+
+    @Test
+    void decodesBaseline420() throws IOException {
+        byte[] jpeg = write(gradient(), false, false, 0);
+        assertMatchesImageIo(jpeg);
+    }
+
+    @Test
+    void decodesWithRestartInterval() throws IOException {
+        byte[] jpeg = write(gradient(), false, false, 7);
+        assertTrue(containsMarker(jpeg, 0xdd), "brak znacznika DRI w pliku testowym");
+        assertMatchesImageIo(jpeg);
+    }
+
+    @Test
+    void decodesGrayscale() throws IOException {
+        BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        gray.getGraphics().drawImage(gradient(), 0, 0, null);
+        byte[] jpeg = write(gray, false, false, 0);
+        assertMatchesImageIo(jpeg);
+    }
+
+    @Test
+    void returnsNullForProgressive() throws IOException {
+        byte[] jpeg = write(gradient(), true, false, 0);
+        assertNull(JpegDcDecoder.decode(jpeg));
+    }
+
+    @Test
+    void returnsNullForOtherFormats() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(gradient(), "png", png);
+        assertNull(JpegDcDecoder.decode(png.toByteArray()));
+    }
+
+    private static void assertMatchesImageIo(byte[] jpeg) throws IOException {
+        BufferedImage decoded = JpegDcDecoder.decode(jpeg);
+        assertNotNull(decoded);
+        BufferedImage expected = readSubsampled(jpeg);
+        assertEquals((WIDTH + 7) / 8, decoded.getWidth());
+        assertEquals((HEIGHT + 7) / 8, decoded.getHeight());
+        assertEquals(expected.getWidth(), decoded.getWidth());
+        assertEquals(expected.getHeight(), decoded.getHeight());
+
+        int worst = 0;
+        for (int y = 0; y < decoded.getHeight(); y++) {
+            for (int x = 0; x < decoded.getWidth(); x++) {
+                int a = decoded.getRGB(x, y);
+                for (int band = 0; band < 3; band++) {
+                    // getRGB obrazu w skali szarości przelicza jasność na sRGB - porównywane są same próbki
+                    int b = expected.getRaster().getSample(x, y, Math.min(band, expected.getRaster().getNumBands() - 1));
+                    worst = Math.max(worst, Math.abs(((a >> (16 - 8 * band)) & 0xff) - b));
+                }
+            }
+        }
+        assertTrue(worst <= TOLERANCE, "największa różnica składowej: " + worst);
+    }
+
+    // Piksel (4, 4) każdego bloku - najbliżej średniej bloku dla gradientu liniowego (ostatnie bloki mają
+    // po 5 pikseli, więc ten piksel jest w każdym)
+    private static BufferedImage readSubsampled(byte[] jpeg) throws IOException {
+        ImageReader reader = ImageIO.getImageReadersByFormatName("jpeg").next();
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg))) {
+            reader.setInput(input);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(8, 8, 4, 4);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static BufferedImage gradient() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = 20 + x * 200 / WIDTH;
+                int g = 30 + y * 190 / HEIGHT;
+                int b = 40 + (x + y) * 160 / (WIDTH + HEIGHT);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    // full - próbkowanie 4:4:4 zamiast domyślnego 4:2:0; restartInterval > 0 - znacznik DRI co tyle MCU
+    private static byte[] write(BufferedImage image, boolean progressive, boolean full, int restartInterval) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.95f);
+            if (progressive) {
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+            IIOMetadataNode tree = (IIOMetadataNode) metadata.getAsTree(FORMAT);
+            IIOMetadataNode markers = (IIOMetadataNode) tree.getElementsByTagName("markerSequence").item(0);
+            if (full) {
+                NodeList components = tree.getElementsByTagName("componentSpec");
+                for (int i = 0; i < components.getLength(); i++) {
+                    IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+                    component.setAttribute("HsamplingFactor", "1");
+                    component.setAttribute("VsamplingFactor", "1");
+                }
+            }
+            if (restartInterval > 0) {
+                IIOMetadataNode dri = new IIOMetadataNode("dri");
+                dri.setAttribute("interval", Integer.toString(restartInterval));
+                markers.insertBefore(dri, tree.getElementsByTagName("sof").item(0));
+            }
+            metadata.setFromTree(FORMAT, tree);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, metadata), param);
+            }
+            return bytes.toByteArray();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static boolean containsMarker(byte[] jpeg, int marker) {
+        for (int i = 0; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xff) == 0xff && (jpeg[i + 1] & 0xff) == marker) {
+                return true;
+            }
+        }
+        return false;
+    }
+}